@@ -0,0 +1,122 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.MappingsUtils;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.PropertiesUtils;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConversionEngine;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.StreamConversion;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseQTestField;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.WorkbookUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Training run used when building the AppCDS archive of the converter (the appcds maven profile).
+ * It goes through the same code paths as a real conversion using in-memory configuration and workbooks,
+ * so that the classes it loads are archived, without needing any file next to the jar.
+ */
+public class CdsTrainingRun {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CdsTrainingRun.class);
+
+    private static final String TRAINING_PROPERTIES = "input.file.path=input.xlsx\noutput.file.path=output.xlsx\n";
+    private static final String TRAINING_MAPPING = "{\n"
+            + "  // training mapping\n"
+            + "  \"field_mappings\": {\n"
+            + "    \"Name\": {\"target\": \"name\"},\n"
+            + "    \"Status\": {\"target\": \"phase\", \"mappings\": {\"New\": \"new\"}, \"regex_mappings\": {\"(.*)\": \"$1\"}},\n"
+            + "  }\n"
+            + "}";
+
+    /**
+     * The entry point of the training run.
+     *
+     * @param args The args that won't be used.
+     *
+     * @throws IOException If any of the conversions fails.
+     */
+    public static void main(String[] args) throws IOException {
+        ConversionProperties properties = PropertiesUtils.readProperties(toInputStream(TRAINING_PROPERTIES), ConversionProperties.class);
+        ConversionMappings mappings = MappingsUtils.readMapping(toInputStream(TRAINING_MAPPING), ConversionMappings.class);
+        ConversionEngine conversionEngine = new ConversionEngine(properties.getInputFileFormatType(), mappings);
+
+        for (OutputFormatType inputFormatType : OutputFormatType.values()) {
+            if (!inputFormatType.isWorkbook()) {
+                continue;
+            }
+            byte[] inputWorkbook = createTrainingWorkbook(inputFormatType);
+            for (OutputFormatType outputFormatType : OutputFormatType.values()) {
+                StreamConversion.convert(conversionEngine, new ByteArrayInputStream(inputWorkbook), NullOutputStream.NULL_OUTPUT_STREAM,
+                        outputFormatType, () -> false);
+            }
+        }
+        LOGGER.info("Training run finished.");
+    }
+
+    /**
+     * @param formatType The format of the training workbook.
+     *
+     * @return A small QTest workbook.
+     *
+     * @throws IOException If the workbook can't be written.
+     */
+    private static byte[] createTrainingWorkbook(OutputFormatType formatType) throws IOException {
+        try (Workbook workbook = WorkbookUtils.create(formatType); ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            workbook.createSheet("Info");
+            Sheet testCases = workbook.createSheet("Test Cases");
+            String[] headers = {BaseQTestField.ID.toString(), "Name", "Status",
+                    BaseQTestField.TEST_STEP_DESCRIPTION.toString(), BaseQTestField.TEST_STEP_EXPECTED_RESULT.toString()};
+            Row headerRow = testCases.createRow(0);
+            for (int i = 0; i < headers.length; i++) {
+                headerRow.createCell(i).setCellValue(headers[i]);
+            }
+            for (int i = 1; i <= 10; i++) {
+                Row row = testCases.createRow(i);
+                row.createCell(0).setCellValue("TC-" + (i + 1) / 2);
+                row.createCell(1).setCellValue("Test " + (i + 1) / 2);
+                row.createCell(2).setCellValue(i % 4 == 0 ? "New" : "Ready");
+                row.createCell(3).setCellValue("Step - " + i);
+                row.createCell(4).setCellValue("Result " + i);
+            }
+            workbook.write(outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * @param content The text content.
+     *
+     * @return A stream with the UTF-8 bytes of the given content.
+     */
+    private static InputStream toInputStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
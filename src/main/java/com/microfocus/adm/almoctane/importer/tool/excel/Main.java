@@ -18,8 +18,16 @@ package com.microfocus.adm.almoctane.importer.tool.excel;
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionInfoContainer;
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConversionEngine;
 import com.microfocus.adm.almoctane.importer.tool.excel.converter.Converter;
-import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConverterFactory;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.MetricsWriter;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ProgressReporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,37 +37,82 @@ import java.util.Date;
 
 public class Main {
 
+    private static final String DEFAULT_PROPERTIES_FILE_PATH = "converter.properties";
+
     private static final Logger LOGGER = getLogger();
 
     /**
      * The entry point of the program.
      *
-     * @param args The args that won't be used.
+     * @param args The optional path to the properties file, converter.properties is used by default.
      */
     public static void main(String[] args) {
+        ConversionInfoContainer infoContainer = null;
+        ProgressReporter progressReporter = null;
         try {
-            ConversionInfoContainer infoContainer = getConversionInfoContainer();
-            Converter converter = ConverterFactory.getConverter(infoContainer);
-
-            LOGGER.info("Conversion started.");
-            converter.convert();
-            converter.write();
+            infoContainer = getConversionInfoContainer(args.length > 0 ? args[0] : DEFAULT_PROPERTIES_FILE_PATH);
+            ConversionProgress conversionProgress = new ConversionProgress();
+            progressReporter = ProgressReporter.start(conversionProgress, infoContainer.getConversionProperties().getProgressIntervalSeconds(),
+                    infoContainer.getConversionProperties().getProgressFilePath());
+            ConversionEngine conversionEngine = ConversionEngine.create(infoContainer);
+            try (Converter converter = conversionEngine.newConverter(infoContainer.getConversionProperties(), conversionProgress)) {
+                LOGGER.info("Conversion started.");
+                converter.convert();
+                converter.write();
+            }
             LOGGER.info("Conversion finished successfully.");
+            progressReporter.finish("success");
+            writeMetrics(infoContainer.getConversionProperties(), "success");
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
             LOGGER.info("Conversion finished unsuccessfully.");
+            if (progressReporter != null) {
+                progressReporter.finish("failure");
+            }
+            writeMetrics(infoContainer != null ? infoContainer.getConversionProperties() : null, "failure");
             System.exit(1);
         }
     }
 
     /**
+     * Counts the conversion and writes the metrics of the run to the files given by the properties, a failed write
+     * is only logged.
+     *
+     * @param properties The properties with the paths of the metrics files, null if they couldn't be read.
+     * @param result     The result of the conversion, success or failure.
+     */
+    private static void writeMetrics(ConversionProperties properties, String result) {
+        ConversionMetrics metrics = ConversionMetrics.getInstance();
+        metrics.add(Metric.CONVERSIONS, 1, result);
+        if (properties == null) {
+            return;
+        }
+        try {
+            if (properties.getMetricsTextfilePath() != null) {
+                MetricsWriter.writeTextfile(metrics, properties.getMetricsTextfilePath());
+            }
+            if (properties.getMetricsJsonPath() != null) {
+                MetricsWriter.writeJson(metrics, properties.getMetricsJsonPath());
+            }
+        } catch (IOException e) {
+            LOGGER.error("The metrics could not be written: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param propertiesFilePath The path to the properties file.
+     *
      * @return A new ConversionInfoContainer from given files.
      *
      * @throws IOException If any of the required files are missing.
      */
-    private static ConversionInfoContainer getConversionInfoContainer() throws IOException {
-        ConversionProperties properties = ConversionProperties.getProperties("converter.properties");
-        ConversionMappings mappings = ConversionMappings.getMappings("mapping.json");
+    private static ConversionInfoContainer getConversionInfoContainer(String propertiesFilePath) throws IOException {
+        ConversionProperties properties;
+        ConversionMappings mappings;
+        try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.CONFIGURATION, propertiesFilePath)) {
+            properties = ConversionProperties.getProperties(propertiesFilePath);
+            mappings = ConversionMappings.getMappings(properties.getMappingFilePath());
+        }
 
         return new ConversionInfoContainer(properties, mappings);
     }
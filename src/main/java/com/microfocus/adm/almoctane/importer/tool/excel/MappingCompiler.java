@@ -0,0 +1,49 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.MappingsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Compiles a mapping file into a binary snapshot, which is then used instead of the mapping file as long as it is unchanged.
+ */
+public class MappingCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappingCompiler.class);
+
+    /**
+     * The entry point of the mapping compiler.
+     *
+     * @param args The optional path to the mapping file, mapping.json is used by default,
+     *             and the optional path of the snapshot, the mapping file path followed by .snapshot is used by default.
+     */
+    public static void main(String[] args) {
+        String mappingFilePath = args.length > 0 ? args[0] : "mapping.json";
+        String snapshotFilePath = args.length > 1 ? args[1] : MappingsSnapshot.getSnapshotFilePath(mappingFilePath);
+        try {
+            int fieldMappingCount = MappingsSnapshot.compile(mappingFilePath, new File(snapshotFilePath));
+            LOGGER.info("Compiled {} field mappings from '{}' into '{}'.", fieldMappingCount, mappingFilePath, snapshotFilePath);
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+}
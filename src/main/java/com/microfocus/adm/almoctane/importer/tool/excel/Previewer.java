@@ -0,0 +1,86 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.analysis.ValueAnalysis;
+import com.microfocus.adm.almoctane.importer.tool.excel.analysis.ValueStatistics;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConversionEngine;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.Converter;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConverterFactory;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.StreamingSheetReader;
+import com.microfocus.adm.almoctane.importer.tool.excel.preview.PreviewMode;
+import com.microfocus.adm.almoctane.importer.tool.excel.preview.TestSampler;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.WorkbookUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Converts a few tests of the input file, the first ones or a random sample, into a small preview output file and
+ * reports how their values are mapped, to check a mapping change without converting the whole input file.
+ */
+public class Previewer {
+
+    private static final int LISTED_VALUE_LIMIT = 50;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Previewer.class);
+
+    /**
+     * The entry point of the previewer.
+     *
+     * @param args The optional path to the properties file, converter.properties is used by default.
+     */
+    public static void main(String[] args) {
+        try {
+            ConversionProperties properties = ConversionProperties.getProperties(args.length > 0 ? args[0] : "converter.properties");
+            ConversionMappings mappings = ConversionMappings.getMappings(properties.getMappingFilePath());
+            ExcelFormatType inputFileFormat = properties.getInputFileFormatType();
+            ConversionEngine conversionEngine = new ConversionEngine(inputFileFormat, mappings);
+            int sheetIndex = ConverterFactory.getInputSheetIndex(inputFileFormat);
+
+            long startTime = System.nanoTime();
+            TestSampler testSampler = new TestSampler(ConverterFactory.getInputIdColumnName(inputFileFormat), properties.getPreviewStratumColumn(),
+                    properties.getPreviewMode(), properties.getPreviewTestCount(), new Random(properties.getPreviewRandomSeed()));
+            StreamingSheetReader.read(new File(properties.getInputFilePath()), sheetIndex, properties.getInputCsvFormat(), testSampler);
+            List<String[]> sampleRows = testSampler.getSampleRows();
+
+            String previewFilePath = properties.getPreviewOutputFilePath();
+            try (Converter converter = conversionEngine.newConverter(WorkbookUtils.create(sampleRows, sheetIndex), previewFilePath, properties)) {
+                converter.convert();
+                converter.write();
+            }
+            List<ValueStatistics> statistics = new ValueAnalysis(conversionEngine, properties.getAnalysisExactValueLimit(),
+                    Runtime.getRuntime().availableProcessors()).analyze(sampleRows);
+
+            String sampleDescription = properties.getPreviewMode() == PreviewMode.FIRST
+                    ? String.format("the first %d tests", testSampler.getSampleTestCount())
+                    : String.format("a sample of %d of the %d tests, from %d strata", testSampler.getSampleTestCount(),
+                    testSampler.getReadTestCount(), testSampler.getStratumCount());
+            LOGGER.info("Converted {} into '{}' in {} ms.{}", sampleDescription, previewFilePath, (System.nanoTime() - startTime) / 1_000_000,
+                    ValueAnalysis.formatReport(statistics, LISTED_VALUE_LIMIT));
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.analysis.ValueAnalysis;
+import com.microfocus.adm.almoctane.importer.tool.excel.analysis.ValueStatistics;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConversionEngine;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConverterFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Reports the values of the mapped columns of the input file and whether each of them is converted by an exact
+ * mapping, the default mapping, a regex mapping or left unchanged, without converting the file.
+ */
+public class ValueAnalyzer {
+
+    private static final int LISTED_VALUE_LIMIT = 50;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValueAnalyzer.class);
+
+    /**
+     * The entry point of the value analyzer.
+     *
+     * @param args The optional path to the properties file, converter.properties is used by default.
+     */
+    public static void main(String[] args) {
+        try {
+            ConversionProperties properties = ConversionProperties.getProperties(args.length > 0 ? args[0] : "converter.properties");
+            ConversionMappings mappings = ConversionMappings.getMappings(properties.getMappingFilePath());
+            ConversionEngine conversionEngine = new ConversionEngine(properties.getInputFileFormatType(), mappings);
+
+            long startTime = System.nanoTime();
+            ValueAnalysis valueAnalysis = new ValueAnalysis(conversionEngine, properties.getAnalysisExactValueLimit(),
+                    Runtime.getRuntime().availableProcessors());
+            List<ValueStatistics> statistics = valueAnalysis.analyze(new File(properties.getInputFilePath()),
+                    ConverterFactory.getInputSheetIndex(properties.getInputFileFormatType()), properties.getInputCsvFormat());
+            LOGGER.info("Analyzed the values of {} mapped columns in {} ms.{}", statistics.size(),
+                    (System.nanoTime() - startTime) / 1_000_000, ValueAnalysis.formatReport(statistics, LISTED_VALUE_LIMIT));
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.analysis;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.FieldMapping;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConversionEngine;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.MappingOutcome;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.ArrayRowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.CsvFormat;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.StreamingSheetReader;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the values of the mapped columns of an input file and the part of the field mapping that converts each of
+ * them, without converting the file. The empty values are skipped.
+ * The sheet is parsed as a single stream, the XML of a .xlsx sheet can't be split safely, and its rows are handed in
+ * batches to a pool of threads that split, classify and count the values. The partial counts are added in order by
+ * the reading thread.
+ */
+@Slf4j
+public class ValueAnalysis {
+
+    private static final int BATCH_ROW_COUNT = 4096;
+
+    private final ConversionEngine conversionEngine;
+    private final int exactValueLimit;
+    private final int threadCount;
+
+    /**
+     * @param conversionEngine The engine whose mappings classify the values.
+     * @param exactValueLimit  The number of distinct values of each column counted exactly.
+     * @param threadCount      The number of threads that classify the values.
+     */
+    public ValueAnalysis(ConversionEngine conversionEngine, int exactValueLimit, int threadCount) {
+        this.conversionEngine = conversionEngine;
+        this.exactValueLimit = exactValueLimit;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @param inputFile  The input Excel or CSV file.
+     * @param sheetIndex The index of the sheet whose first row holds the headers, ignored for a CSV file.
+     * @param csvFormat  The charset and the delimiter of a CSV file.
+     *
+     * @return The statistics of each mapped column found in the headers, in the order of the headers.
+     *
+     * @throws IOException If the input file can't be read.
+     */
+    public List<ValueStatistics> analyze(File inputFile, int sheetIndex, CsvFormat csvFormat) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new AnalysisThreadFactory());
+        try {
+            BatchReader batchReader = new BatchReader(executor);
+            StreamingSheetReader.read(inputFile, sheetIndex, csvFormat, batchReader);
+            batchReader.finish();
+            return batchReader.getStatistics();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param rows The rows of a sheet already read, the first one holds the headers.
+     *
+     * @return The statistics of each mapped column found in the headers, in the order of the headers.
+     *
+     * @throws IOException If the values can't be classified.
+     */
+    public List<ValueStatistics> analyze(List<String[]> rows) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new AnalysisThreadFactory());
+        try {
+            BatchReader batchReader = new BatchReader(executor);
+            ArrayRowView row = new ArrayRowView();
+            for (int rowNumber = 0; rowNumber < rows.size(); rowNumber++) {
+                if (!batchReader.handleRow(row.set(rowNumber, rows.get(rowNumber)))) {
+                    break;
+                }
+            }
+            batchReader.finish();
+            return batchReader.getStatistics();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param statistics       The statistics of the mapped columns.
+     * @param listedValueLimit The number of exactly counted values listed for each outcome of a column.
+     *
+     * @return A readable report listing, for each column, the values converted by an exact mapping, the default
+     * mapping, a regex mapping or by none of them, the most frequent first.
+     */
+    public static String formatReport(List<ValueStatistics> statistics, int listedValueLimit) {
+        StringBuilder report = new StringBuilder();
+        for (ValueStatistics columnStatistics : statistics) {
+            report.append(String.format("%nColumn '%s': %d values%s%n", columnStatistics.getColumnName(), columnStatistics.getValueCount(),
+                    columnStatistics.isEstimated() ? ", distinct counts beyond the exact value limit are estimated" : ""));
+            for (MappingOutcome outcome : MappingOutcome.values()) {
+                long valueCount = columnStatistics.getValueCount(outcome);
+                if (valueCount == 0) {
+                    continue;
+                }
+                report.append(String.format("  %s: %d values, %d distinct%n", outcome, valueCount, columnStatistics.getDistinctValueCount(outcome)));
+                List<ValueCount> exactValues = columnStatistics.getExactValues(outcome);
+                exactValues.stream().limit(listedValueLimit)
+                        .forEach(value -> report.append(String.format("    %8d  '%s'%n", value.getCount(), value.getValue())));
+                if (exactValues.size() > listedValueLimit) {
+                    report.append(String.format("    ... %d more%n", exactValues.size() - listedValueLimit));
+                }
+                columnStatistics.getFrequentEstimatedValues(outcome)
+                        .forEach(value -> report.append(String.format("   ~%8d  '%s'%n", value.getCount(), value.getValue())));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Reads the header row, then batches the values of the mapped columns and adds the partial counts of the batches
+     * as they complete, keeping at most two batches per thread in flight.
+     */
+    private class BatchReader implements StreamingSheetReader.RowHandler {
+
+        private final ExecutorService executor;
+        private final Deque<Future<List<Map<String, ValueCount>>>> pendingBatches = new ArrayDeque<>();
+        private List<ValueStatistics> statistics;
+        private int[] columnIndexes;
+        private List<String[]> batch = new ArrayList<>(BATCH_ROW_COUNT);
+
+        private BatchReader(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean handleRow(RowView row) throws IOException {
+            if (statistics == null) {
+                readHeaders(row.toArray());
+                return !statistics.isEmpty();
+            }
+
+            String[] mappedValues = new String[columnIndexes.length];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                String value = row.getValue(columnIndexes[i]);
+                mappedValues[i] = value != null ? value.trim() : null;
+            }
+            batch.add(mappedValues);
+            if (batch.size() == BATCH_ROW_COUNT) {
+                submitBatch();
+            }
+            return true;
+        }
+
+        /**
+         * @return The statistics of the mapped columns, none if the sheet has no rows.
+         */
+        private List<ValueStatistics> getStatistics() {
+            return statistics != null ? statistics : Collections.emptyList();
+        }
+
+        private void readHeaders(String[] headers) {
+            statistics = new ArrayList<>();
+            List<Integer> indexes = new ArrayList<>();
+            Map<String, FieldMapping> fieldNameToFieldMapping = conversionEngine.getConversionMappings().getFieldNameToFieldMapping();
+            for (int i = 0; i < headers.length; i++) {
+                if (headers[i] != null && fieldNameToFieldMapping.containsKey(headers[i])) {
+                    statistics.add(new ValueStatistics(headers[i], exactValueLimit));
+                    indexes.add(i);
+                }
+            }
+            columnIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+            if (statistics.isEmpty()) {
+                log.warn("None of the mapped fields is a column of the input sheet.");
+            }
+        }
+
+        private void submitBatch() throws IOException {
+            List<String[]> rows = batch;
+            batch = new ArrayList<>(BATCH_ROW_COUNT);
+            pendingBatches.add(executor.submit(() -> countBatch(rows)));
+            if (pendingBatches.size() >= 2 * threadCount) {
+                addBatchCounts(pendingBatches.poll());
+            }
+        }
+
+        private void finish() throws IOException {
+            if (!batch.isEmpty()) {
+                submitBatch();
+            }
+            while (!pendingBatches.isEmpty()) {
+                addBatchCounts(pendingBatches.poll());
+            }
+        }
+
+        /**
+         * @param rows The values of the mapped columns of a batch of rows.
+         *
+         * @return The classified values of each mapped column and their counts in the batch.
+         */
+        private List<Map<String, ValueCount>> countBatch(List<String[]> rows) {
+            List<Map<String, ValueCount>> batchCounts = new ArrayList<>(columnIndexes.length);
+            for (int column = 0; column < columnIndexes.length; column++) {
+                String columnName = statistics.get(column).getColumnName();
+                String separator = conversionEngine.getConversionMappings().getFieldNameToFieldMapping().get(columnName).getMappingsSeparator();
+                Map<String, ValueCount> valueCounts = new HashMap<>();
+                for (String[] row : rows) {
+                    if (row[column] == null || row[column].isEmpty()) {
+                        continue;
+                    }
+                    // the values are split the same way as in ConversionEngine#convertField
+                    List<String> values = separator != null ? Arrays.asList(row[column].split(separator)) : Collections.singletonList(row[column]);
+                    for (String value : values) {
+                        String singleValue = separator != null ? value.trim() : value;
+                        if (singleValue.isEmpty()) {
+                            continue;
+                        }
+                        ValueCount valueCount = valueCounts.get(singleValue);
+                        if (valueCount != null) {
+                            valueCount.add(1);
+                        } else {
+                            valueCounts.put(singleValue, new ValueCount(singleValue, 1, getMappingOutcome(columnName, singleValue)));
+                        }
+                    }
+                }
+                batchCounts.add(valueCounts);
+            }
+            return batchCounts;
+        }
+
+        /**
+         * @param columnName  The name of a mapped column.
+         * @param singleValue A single value of the column, already trimmed and split by the mappings separator.
+         *
+         * @return The part of the field mapping that converts the value in the conversion.
+         */
+        private MappingOutcome getMappingOutcome(String columnName, String singleValue) {
+            try {
+                return conversionEngine.mapValue(columnName, singleValue).getOutcome();
+            } catch (ConversionException ex) {
+                // the regex matches but its replacement fails, the conversion rejects the value
+                return MappingOutcome.REGEX;
+            }
+        }
+
+        private void addBatchCounts(Future<List<Map<String, ValueCount>>> pendingBatch) throws IOException {
+            List<Map<String, ValueCount>> batchCounts;
+            try {
+                batchCounts = pendingBatch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The value analysis was interrupted.");
+            } catch (ExecutionException e) {
+                throw new IOException("The values of a batch of rows couldn't be classified.", e.getCause());
+            }
+            for (int column = 0; column < batchCounts.size(); column++) {
+                ValueStatistics columnStatistics = statistics.get(column);
+                for (ValueCount valueCount : batchCounts.get(column).values()) {
+                    columnStatistics.add(valueCount.getValue(), valueCount.getCount(), valueCount.getOutcome());
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Creates daemon threads, so an analysis that failed can't keep the JVM alive.
+     */
+    private static class AnalysisThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "octane-converter-analysis-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.analysis;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.MappingOutcome;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The number of occurrences of an input value and the part of the field mapping that converts it.
+ */
+@Getter
+@AllArgsConstructor
+public class ValueCount {
+
+    private final String value;
+    private long count;
+    private final MappingOutcome outcome;
+
+    void add(long count) {
+        this.count += count;
+    }
+
+    void setCount(long count) {
+        this.count = count;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.analysis;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.MappingOutcome;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The values of an input column and their frequencies. The first distinct values, up to the exact value limit, are
+ * counted exactly. The values seen after the limit is reached are only estimated: their distinct count with a
+ * {@link HyperLogLog} per mapping outcome and the most frequent of them with a {@link CountMinSketch}.
+ * Not thread-safe, the partial counts of the parallel tasks are added by a single thread.
+ */
+public class ValueStatistics {
+
+    private static final int FREQUENT_ESTIMATED_VALUE_LIMIT = 20;
+
+    @Getter
+    private final String columnName;
+    private final int exactValueLimit;
+    private final Map<String, ValueCount> exactValues = new HashMap<>();
+    private final Map<MappingOutcome, Long> outcomeValueCounts = new EnumMap<>(MappingOutcome.class);
+    private final Map<MappingOutcome, HyperLogLog> estimatedDistinctValues = new EnumMap<>(MappingOutcome.class);
+    private final Map<String, ValueCount> frequentEstimatedValues = new HashMap<>();
+    private CountMinSketch estimatedFrequencies;
+    @Getter
+    private long valueCount;
+
+    /**
+     * @param columnName      The name of the input column.
+     * @param exactValueLimit The number of distinct values counted exactly.
+     */
+    public ValueStatistics(String columnName, int exactValueLimit) {
+        this.columnName = columnName;
+        this.exactValueLimit = exactValueLimit;
+    }
+
+    /**
+     * @param value   An input value.
+     * @param count   The number of occurrences of the value.
+     * @param outcome The part of the field mapping that converts the value.
+     */
+    void add(String value, long count, MappingOutcome outcome) {
+        valueCount += count;
+        outcomeValueCounts.merge(outcome, count, Long::sum);
+
+        ValueCount exactValue = exactValues.get(value);
+        if (exactValue != null) {
+            exactValue.add(count);
+        } else if (exactValues.size() < exactValueLimit) {
+            exactValues.put(value, new ValueCount(value, count, outcome));
+        } else {
+            addEstimated(value, count, outcome);
+        }
+    }
+
+    /**
+     * Counts a value beyond the exact value limit and keeps the most frequent of these values.
+     */
+    private void addEstimated(String value, long count, MappingOutcome outcome) {
+        if (estimatedFrequencies == null) {
+            estimatedFrequencies = new CountMinSketch();
+        }
+        long hash = HyperLogLog.hash(value);
+        estimatedDistinctValues.computeIfAbsent(outcome, key -> new HyperLogLog()).add(hash);
+        estimatedFrequencies.add(hash, count);
+
+        long estimatedCount = estimatedFrequencies.estimate(hash);
+        ValueCount frequentValue = frequentEstimatedValues.get(value);
+        if (frequentValue != null) {
+            frequentValue.setCount(estimatedCount);
+        } else if (frequentEstimatedValues.size() < FREQUENT_ESTIMATED_VALUE_LIMIT) {
+            frequentEstimatedValues.put(value, new ValueCount(value, estimatedCount, outcome));
+        } else {
+            ValueCount leastFrequentValue = frequentEstimatedValues.values().stream()
+                    .min(Comparator.comparingLong(ValueCount::getCount))
+                    .orElseThrow(IllegalStateException::new);
+            if (leastFrequentValue.getCount() < estimatedCount) {
+                frequentEstimatedValues.remove(leastFrequentValue.getValue());
+                frequentEstimatedValues.put(value, new ValueCount(value, estimatedCount, outcome));
+            }
+        }
+    }
+
+    /**
+     * @param outcome A mapping outcome.
+     *
+     * @return The number of values of the column with the given outcome, exact.
+     */
+    public long getValueCount(MappingOutcome outcome) {
+        return outcomeValueCounts.getOrDefault(outcome, 0L);
+    }
+
+    /**
+     * @param outcome A mapping outcome.
+     *
+     * @return The number of distinct values of the column with the given outcome, estimated if the exact value limit was reached.
+     */
+    public long getDistinctValueCount(MappingOutcome outcome) {
+        long exactCount = exactValues.values().stream().filter(value -> value.getOutcome() == outcome).count();
+        HyperLogLog estimatedDistinct = estimatedDistinctValues.get(outcome);
+        return exactCount + (estimatedDistinct != null ? estimatedDistinct.estimate() : 0);
+    }
+
+    /**
+     * @return true if some distinct values weren't counted exactly because the exact value limit was reached.
+     */
+    public boolean isEstimated() {
+        return estimatedFrequencies != null;
+    }
+
+    /**
+     * @param outcome A mapping outcome.
+     *
+     * @return The exactly counted values with the given outcome, the most frequent first.
+     */
+    public List<ValueCount> getExactValues(MappingOutcome outcome) {
+        return sortByCount(exactValues.values(), outcome);
+    }
+
+    /**
+     * @param outcome A mapping outcome.
+     *
+     * @return The most frequent of the values beyond the exact value limit with the given outcome and their estimated
+     * counts, the most frequent first.
+     */
+    public List<ValueCount> getFrequentEstimatedValues(MappingOutcome outcome) {
+        return sortByCount(frequentEstimatedValues.values(), outcome);
+    }
+
+    private static List<ValueCount> sortByCount(Collection<ValueCount> values, MappingOutcome outcome) {
+        return values.stream()
+                .filter(value -> value.getOutcome() == outcome)
+                .sorted(Comparator.comparingLong(ValueCount::getCount).reversed().thenComparing(ValueCount::getValue))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+}
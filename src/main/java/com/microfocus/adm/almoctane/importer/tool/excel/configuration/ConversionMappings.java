@@ -17,24 +17,44 @@ package com.microfocus.adm.almoctane.importer.tool.excel.configuration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * The mapping needed to specify what field from source excel goes to what field from destination excel and with what properties.
  */
 @Getter
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class ConversionMappings {
 
     @JsonProperty("field_mappings")
-    private LinkedHashMap<String, FieldMapping> fieldNameToFieldMapping;
+    private Map<String, FieldMapping> fieldNameToFieldMapping;
 
+    /**
+     * @param filePath The path to the mapping file, on the file system or on the classpath.
+     *
+     * @return The mappings from the snapshot of the mapping file if it is up to date, otherwise from the mapping file.
+     *
+     * @throws IOException If the mapping file can't be read.
+     */
     public static ConversionMappings getMappings(String filePath) throws IOException {
-        return MappingsUtils.getMapping(filePath, ConversionMappings.class);
+        return MappingsSnapshot.getMappings(filePath);
     }
 
-}
\ No newline at end of file
+    /**
+     * @return A copy of the mappings that can't be modified, a later change of these mappings doesn't affect it.
+     */
+    public ConversionMappings unmodifiableCopy() {
+        Map<String, FieldMapping> fieldNameToFieldMappingCopy = new LinkedHashMap<>();
+        fieldNameToFieldMapping.forEach((fieldName, fieldMapping) -> fieldNameToFieldMappingCopy.put(fieldName, fieldMapping.unmodifiableCopy()));
+        return new ConversionMappings(Collections.unmodifiableMap(fieldNameToFieldMappingCopy));
+    }
+
+}
@@ -18,12 +18,17 @@ package com.microfocus.adm.almoctane.importer.tool.excel.configuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.annotation.Nulls;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.CsvFormat;
+import com.microfocus.adm.almoctane.importer.tool.excel.preview.PreviewMode;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 
 /**
  * Converter configuration properties.
@@ -39,11 +44,151 @@ public class ConversionProperties {
     @JsonProperty("input.file.format.type")
     private ExcelFormatType inputFileFormatType = ExcelFormatType.QTEST;
 
+    @JsonProperty("input.csv.charset")
+    private String inputCsvCharset;
+
+    @JsonProperty("input.csv.delimiter")
+    private String inputCsvDelimiter;
+
     @JsonProperty("output.file.path")
     private String outputFilePath;
 
+    @JsonSetter(nulls = Nulls.SKIP)
+    @JsonProperty("mapping.file.path")
+    private String mappingFilePath = "mapping.json";
+
+    @JsonProperty("output.heap.budget.mb")
+    private Long outputHeapBudgetMb;
+
+    @JsonProperty("output.compression.level")
+    private Integer outputCompressionLevel;
+
+    @JsonProperty("rejects.file.path")
+    private String rejectsFilePath;
+
+    @JsonProperty("metrics.textfile.path")
+    private String metricsTextfilePath;
+
+    @JsonProperty("metrics.json.path")
+    private String metricsJsonPath;
+
+    @JsonProperty("progress.interval.seconds")
+    private Integer progressIntervalSeconds;
+
+    @JsonProperty("progress.file.path")
+    private String progressFilePath;
+
+    @JsonProperty("shared.steps.min.length")
+    private Integer sharedStepsMinLength;
+
+    @JsonProperty("shared.steps.min.occurrences")
+    private Integer sharedStepsMinOccurrences;
+
+    @JsonProperty("analysis.exact.value.limit")
+    private Integer analysisExactValueLimit;
+
+    @JsonSetter(nulls = Nulls.SKIP)
+    @JsonProperty("preview.mode")
+    private PreviewMode previewMode = PreviewMode.FIRST;
+
+    @JsonProperty("preview.test.count")
+    private Integer previewTestCount;
+
+    @JsonProperty("preview.stratum.column")
+    private String previewStratumColumn;
+
+    @JsonProperty("preview.random.seed")
+    private Long previewRandomSeed;
+
+    @JsonProperty("preview.output.file.path")
+    private String previewOutputFilePath;
+
     public static ConversionProperties getProperties(String filePath) throws IOException {
         return PropertiesUtils.getProperties(filePath, ConversionProperties.class);
     }
 
+    /**
+     * @return Properties with the default values, used when the converter runs on streams instead of files.
+     */
+    public static ConversionProperties getDefaultProperties() {
+        return new ConversionProperties();
+    }
+
+    /**
+     * @return The charset and the delimiter of a .csv input file, UTF-8 and comma separated if unset.
+     *
+     * @throws IllegalArgumentException If the charset isn't supported or the delimiter isn't a single ASCII character.
+     */
+    public CsvFormat getInputCsvFormat() {
+        if (inputCsvCharset == null && inputCsvDelimiter == null) {
+            return CsvFormat.DEFAULT;
+        }
+        if (inputCsvDelimiter != null && inputCsvDelimiter.length() != 1) {
+            throw new IllegalArgumentException("The CSV delimiter '" + inputCsvDelimiter + "' must be a single character.");
+        }
+        Charset charset;
+        try {
+            charset = inputCsvCharset == null ? CsvFormat.DEFAULT.getCharset() : Charset.forName(inputCsvCharset);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalArgumentException("The CSV charset '" + inputCsvCharset + "' isn't supported.", e);
+        }
+        return new CsvFormat(charset, inputCsvDelimiter == null ? (char) CsvFormat.DEFAULT.getDelimiter() : inputCsvDelimiter.charAt(0));
+    }
+
+    /**
+     * @return The heap budget of the buffered output rows in bytes, 0 if the rows are never spilled to disk.
+     */
+    public long getOutputHeapBudget() {
+        return outputHeapBudgetMb == null ? 0 : outputHeapBudgetMb * 1024 * 1024;
+    }
+
+    /**
+     * @return The number of seconds between two progress reports, 10 if unset, 0 or less for no reports.
+     */
+    public int getProgressIntervalSeconds() {
+        return progressIntervalSeconds == null ? 10 : progressIntervalSeconds;
+    }
+
+    /**
+     * @return The number of occurrences from which a run of steps is written as a shared test, 3 if unset.
+     */
+    public int getSharedStepsMinOccurrences() {
+        return sharedStepsMinOccurrences == null ? 3 : sharedStepsMinOccurrences;
+    }
+
+    /**
+     * @return The number of distinct values of each column counted exactly by the value analysis, 10000 if unset.
+     */
+    public int getAnalysisExactValueLimit() {
+        return analysisExactValueLimit == null ? 10000 : analysisExactValueLimit;
+    }
+
+    /**
+     * @return The number of tests of a preview, 100 if unset.
+     */
+    public int getPreviewTestCount() {
+        return previewTestCount == null ? 100 : previewTestCount;
+    }
+
+    /**
+     * @return The seed of the random sample of a preview, 0 if unset so the same input gives the same sample.
+     */
+    public long getPreviewRandomSeed() {
+        return previewRandomSeed == null ? 0 : previewRandomSeed;
+    }
+
+    /**
+     * @return The path of the preview output file, by default the output file path with .preview before its extension.
+     */
+    public String getPreviewOutputFilePath() {
+        if (previewOutputFilePath != null) {
+            return previewOutputFilePath;
+        } else if (outputFilePath == null) {
+            return "preview.xlsx";
+        }
+        int extensionIndex = outputFilePath.lastIndexOf('.');
+        return extensionIndex > 0 ? outputFilePath.substring(0, extensionIndex) + ".preview" + outputFilePath.substring(extensionIndex)
+                : outputFilePath + ".preview.xlsx";
+    }
+
 }
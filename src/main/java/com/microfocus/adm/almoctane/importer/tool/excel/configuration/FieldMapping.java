@@ -28,6 +28,7 @@ import lombok.ToString;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +54,14 @@ public class FieldMapping {
     @JsonDeserialize(using = RegexMappingDeserializer.class)
     private List<RegexMapping> regexMappings = Collections.emptyList();
 
+    /**
+     * @return A copy of the mapping whose value mappings and regex mappings can't be modified.
+     */
+    FieldMapping unmodifiableCopy() {
+        return new FieldMapping(target, mappingsSeparator, Collections.unmodifiableMap(new LinkedHashMap<>(mappings)),
+                Collections.unmodifiableList(new ArrayList<>(regexMappings)));
+    }
+
     /**
      * Deserializer for {@link RegexMapping}.
      */
@@ -0,0 +1,255 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.configuration;
+
+import com.google.common.collect.Maps;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a mapping file.
+ * The snapshot contains the SHA-256 hash of the mapping file it was compiled from, the field mappings with their value
+ * mappings sized up front and the regex mappings that were already validated. When the hash still matches the mapping
+ * file, the mappings are loaded from the snapshot without parsing the JSON and the regexes are only compiled when used.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MappingsSnapshot {
+
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private static final int MAGIC = 0x4F434D53; // OCMS
+    private static final int VERSION = 1;
+
+    /**
+     * @param mappingFilePath The path to the mapping file, on the file system or on the classpath.
+     *
+     * @return The mappings from the snapshot of the mapping file if it is up to date, otherwise from the mapping file.
+     *
+     * @throws IOException If the mapping file can't be read.
+     */
+    public static ConversionMappings getMappings(String mappingFilePath) throws IOException {
+        byte[] mappingFileContent = ResourceUtils.readAllBytes(mappingFilePath);
+        byte[] mappingFileHash = hash(mappingFileContent);
+
+        String snapshotFilePath = getSnapshotFilePath(mappingFilePath);
+        if (ResourceUtils.exists(snapshotFilePath)) {
+            try (InputStream snapshotInputStream = ResourceUtils.open(snapshotFilePath)) {
+                ConversionMappings conversionMappings = read(snapshotInputStream, mappingFileHash);
+                if (conversionMappings != null) {
+                    log.debug("Mappings loaded from the snapshot '{}'.", snapshotFilePath);
+                    return conversionMappings;
+                }
+                log.warn("The snapshot '{}' is out of date, the mappings are read from '{}'.", snapshotFilePath, mappingFilePath);
+            } catch (IOException e) {
+                log.warn("The snapshot '{}' could not be read, the mappings are read from '{}'. Reason: {}",
+                        snapshotFilePath, mappingFilePath, e.getMessage());
+            }
+        }
+
+        try {
+            return MappingsUtils.readMapping(new ByteArrayInputStream(mappingFileContent), ConversionMappings.class);
+        } catch (Exception e) {
+            throw new IOException("Could not read the file " + mappingFilePath + " because: " + e);
+        }
+    }
+
+    /**
+     * Parses and validates the mapping file and writes its snapshot.
+     *
+     * @param mappingFilePath The path to the mapping file, on the file system or on the classpath.
+     * @param snapshotFile    The file the snapshot will be written to.
+     *
+     * @return The number of field mappings written to the snapshot.
+     *
+     * @throws IOException If the mapping file is invalid or the snapshot can't be written.
+     */
+    public static int compile(String mappingFilePath, File snapshotFile) throws IOException {
+        byte[] mappingFileContent = ResourceUtils.readAllBytes(mappingFilePath);
+        ConversionMappings conversionMappings;
+        try {
+            // the regexes are compiled, thus validated, while parsing
+            conversionMappings = MappingsUtils.readMapping(new ByteArrayInputStream(mappingFileContent), ConversionMappings.class);
+        } catch (Exception e) {
+            throw new IOException("Could not read the file " + mappingFilePath + " because: " + e);
+        }
+
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(snapshotFile.toPath()))) {
+            write(conversionMappings, hash(mappingFileContent), outputStream);
+        }
+        return conversionMappings.getFieldNameToFieldMapping().size();
+    }
+
+    /**
+     * @param mappingFilePath The path to the mapping file.
+     *
+     * @return The path of the snapshot of the given mapping file.
+     */
+    public static String getSnapshotFilePath(String mappingFilePath) {
+        return mappingFilePath + SNAPSHOT_EXTENSION;
+    }
+
+    /**
+     * @param conversionMappings The mappings that will be written.
+     * @param mappingFileHash    The hash of the mapping file the mappings were read from.
+     * @param outputStream       The stream the snapshot is written to, it isn't closed.
+     *
+     * @throws IOException If the write fails.
+     */
+    static void write(ConversionMappings conversionMappings, byte[] mappingFileHash, OutputStream outputStream) throws IOException {
+        DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeInt(VERSION);
+        dataOutputStream.writeInt(mappingFileHash.length);
+        dataOutputStream.write(mappingFileHash);
+
+        Map<String, FieldMapping> fieldNameToFieldMapping = conversionMappings.getFieldNameToFieldMapping();
+        dataOutputStream.writeInt(fieldNameToFieldMapping.size());
+        for (Map.Entry<String, FieldMapping> fieldNameAndFieldMapping : fieldNameToFieldMapping.entrySet()) {
+            FieldMapping fieldMapping = fieldNameAndFieldMapping.getValue();
+            writeString(dataOutputStream, fieldNameAndFieldMapping.getKey());
+            writeString(dataOutputStream, fieldMapping.getTarget());
+            writeString(dataOutputStream, fieldMapping.getMappingsSeparator());
+
+            dataOutputStream.writeInt(fieldMapping.getMappings().size());
+            for (Map.Entry<String, String> valueMapping : fieldMapping.getMappings().entrySet()) {
+                writeString(dataOutputStream, valueMapping.getKey());
+                writeString(dataOutputStream, valueMapping.getValue());
+            }
+
+            dataOutputStream.writeInt(fieldMapping.getRegexMappings().size());
+            for (RegexMapping regexMapping : fieldMapping.getRegexMappings()) {
+                writeString(dataOutputStream, regexMapping.getRegex());
+                writeString(dataOutputStream, regexMapping.getReplacement());
+            }
+        }
+        dataOutputStream.flush();
+    }
+
+    /**
+     * @param inputStream     The stream the snapshot is read from, it isn't closed.
+     * @param mappingFileHash The hash of the current mapping file.
+     *
+     * @return The mappings of the snapshot or null if the snapshot was compiled from a different mapping file.
+     *
+     * @throws IOException If the snapshot is invalid or the read fails.
+     */
+    static ConversionMappings read(InputStream inputStream, byte[] mappingFileHash) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
+        if (dataInputStream.readInt() != MAGIC || dataInputStream.readInt() != VERSION) {
+            throw new IOException("Not a mapping snapshot or a snapshot of an unsupported version.");
+        }
+        byte[] snapshotHash = new byte[dataInputStream.readInt()];
+        dataInputStream.readFully(snapshotHash);
+        if (!Arrays.equals(snapshotHash, mappingFileHash)) {
+            return null;
+        }
+
+        int fieldCount = dataInputStream.readInt();
+        LinkedHashMap<String, FieldMapping> fieldNameToFieldMapping = Maps.newLinkedHashMapWithExpectedSize(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            String fieldName = readString(dataInputStream);
+            String target = readString(dataInputStream);
+            String mappingsSeparator = readString(dataInputStream);
+
+            int mappingCount = dataInputStream.readInt();
+            // sized up front, so the table is built once without any rehashing
+            Map<String, String> mappings = Maps.newHashMapWithExpectedSize(mappingCount);
+            for (int j = 0; j < mappingCount; j++) {
+                mappings.put(readString(dataInputStream), readString(dataInputStream));
+            }
+
+            int regexMappingCount = dataInputStream.readInt();
+            List<RegexMapping> regexMappings = new ArrayList<>(regexMappingCount);
+            for (int j = 0; j < regexMappingCount; j++) {
+                regexMappings.add(RegexMapping.ofValidatedRegex(readString(dataInputStream), readString(dataInputStream)));
+            }
+
+            fieldNameToFieldMapping.put(fieldName, new FieldMapping(target, mappingsSeparator, mappings, regexMappings));
+        }
+        return new ConversionMappings(fieldNameToFieldMapping);
+    }
+
+    /**
+     * @param content The content of a file.
+     *
+     * @return The SHA-256 hash of the given content.
+     */
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implementation is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length followed by its UTF-8 bytes, -1 is used for null.
+     *
+     * @param dataOutputStream The stream the string is written to.
+     * @param value            The written string.
+     *
+     * @throws IOException If the write fails.
+     */
+    private static void writeString(DataOutputStream dataOutputStream, String value) throws IOException {
+        if (value == null) {
+            dataOutputStream.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            dataOutputStream.writeInt(bytes.length);
+            dataOutputStream.write(bytes);
+        }
+    }
+
+    /**
+     * @param dataInputStream The stream the string is read from.
+     *
+     * @return The string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @throws IOException If the read fails.
+     */
+    private static String readString(DataInputStream dataInputStream) throws IOException {
+        int length = dataInputStream.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        dataInputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -32,27 +32,46 @@ import java.io.InputStream;
 public class MappingsUtils {
 
     /**
-     * @param filePath The path to the *.json file.
+     * @param filePath The path to the *.json file, on the file system or on the classpath.
      * @param cls      The class which will be used to parse the input JSON.
      * @param <T>      The type of mapping that will be returned.
      *
      * @return The parsed JSON.
      */
     public static <T> T getMapping(String filePath, Class<?> cls) throws IOException {
-        if (MappingsUtils.class.getClassLoader().getResource(filePath) == null) {
-            throw new FileNotFoundException("Could not read the file " + filePath + " because it does not exist.");
-        }
-
-        try (InputStream fileInputStream = MappingsUtils.class.getClassLoader().getResourceAsStream(filePath)) {
-            return new JsonMapper()
-                    .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-                    .readerFor(cls)
-                    .with(JsonReadFeature.ALLOW_TRAILING_COMMA)
-                    .with(JsonReadFeature.ALLOW_JAVA_COMMENTS)
-                    .readValue(fileInputStream);
+        try (InputStream fileInputStream = ResourceUtils.open(filePath)) {
+            return readMapping(fileInputStream, cls);
+        } catch (FileNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             throw new IOException("Could not read the file " + filePath + " because: " + e);
         }
     }
 
+    /**
+     * @param inputStream The stream that contains the JSON, it isn't closed.
+     * @param cls         The class which will be used to parse the input JSON.
+     * @param <T>         The type of mapping that will be returned.
+     *
+     * @return The parsed JSON.
+     */
+    public static <T> T readMapping(InputStream inputStream, Class<?> cls) throws IOException {
+        return JsonMapperHolder.JSON_MAPPER
+                .readerFor(cls)
+                .with(JsonReadFeature.ALLOW_TRAILING_COMMA)
+                .with(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+                .readValue(inputStream);
+    }
+
+    /**
+     * Holder of the shared, thread-safe JSON mapper, it is only built when the first mapping is read.
+     */
+    private static class JsonMapperHolder {
+
+        private static final JsonMapper JSON_MAPPER = JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+
+    }
+
 }
@@ -19,9 +19,12 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.cfg.CoercionAction;
+import com.fasterxml.jackson.databind.cfg.CoercionInputShape;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.type.LogicalType;
 import com.fasterxml.jackson.dataformat.javaprop.JavaPropsMapper;
 import com.fasterxml.jackson.dataformat.javaprop.JavaPropsSchema;
 import lombok.AccessLevel;
@@ -38,35 +41,37 @@ import java.io.InputStream;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class PropertiesUtils {
 
-    private static final SimpleModule treatEmptyStringsAsNullModule = createTreatEmptyStringsAsNullModule();
-
     /**
-     * @param filePath The path to the properties file.
+     * @param filePath The path to the properties file, on the file system or on the classpath.
      * @param cls      The class which will be used to parse the properties.
      * @param <T>      The type of mapping that will be returned.
      *
      * @return The parsed JSON.
      */
     public static <T> T getProperties(String filePath, Class<?> cls) throws IOException {
-        if (PropertiesUtils.class.getClassLoader().getResource(filePath) == null) {
-            throw new FileNotFoundException("Could not read the file " + filePath + " because it does not exist.");
-        }
-
-        try (InputStream fileInputStream = PropertiesUtils.class.getClassLoader().getResourceAsStream(filePath)) {
-            return JavaPropsMapper.builder()
-                    .addModule(treatEmptyStringsAsNullModule)
-                    .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-                    .enable(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL)
-                    .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
-                    .build()
-                    .readerFor(cls)
-                    .with(JavaPropsSchema.emptySchema().withoutPathSeparator())
-                    .readValue(fileInputStream);
+        try (InputStream fileInputStream = ResourceUtils.open(filePath)) {
+            return readProperties(fileInputStream, cls);
+        } catch (FileNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             throw new IOException("Could not read the file " + filePath + " because: " + e);
         }
     }
 
+    /**
+     * @param inputStream The stream that contains the properties, it isn't closed.
+     * @param cls         The class which will be used to parse the properties.
+     * @param <T>         The type of mapping that will be returned.
+     *
+     * @return The parsed properties.
+     */
+    public static <T> T readProperties(InputStream inputStream, Class<?> cls) throws IOException {
+        return PropsMapperHolder.PROPS_MAPPER
+                .readerFor(cls)
+                .with(JavaPropsSchema.emptySchema().withoutPathSeparator())
+                .readValue(inputStream);
+    }
+
     /**
      * @return A new {@link SimpleModule} used to treat empty strings as null.
      */
@@ -84,4 +89,20 @@ public class PropertiesUtils {
                 });
     }
 
+    /**
+     * Holder of the shared, thread-safe properties mapper, it is only built when the first properties file is read.
+     */
+    private static class PropsMapperHolder {
+
+        private static final JavaPropsMapper PROPS_MAPPER = JavaPropsMapper.builder()
+                .addModule(createTreatEmptyStringsAsNullModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL)
+                .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+                // an empty numeric property is unset, like an empty string property, instead of 0
+                .withCoercionConfig(LogicalType.Integer, config -> config.setCoercion(CoercionInputShape.EmptyString, CoercionAction.AsNull))
+                .build();
+
+    }
+
 }
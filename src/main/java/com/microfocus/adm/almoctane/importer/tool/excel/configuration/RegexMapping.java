@@ -15,9 +15,8 @@
  */
 package com.microfocus.adm.almoctane.importer.tool.excel.configuration;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
 
 import java.util.regex.Pattern;
 
@@ -25,16 +24,50 @@ import java.util.regex.Pattern;
  * Data class used for regex mapping.
  */
 @Getter
-@NoArgsConstructor
-@AllArgsConstructor
 public class RegexMapping {
 
-    private Pattern pattern;
-    private String replacement;
+    private final String regex;
+    private final String replacement;
+    @Getter(AccessLevel.NONE)
+    private volatile Pattern pattern;
 
-    public RegexMapping(String pattern, String replacement) {
-        this.pattern = Pattern.compile(pattern);
+    public RegexMapping(Pattern pattern, String replacement) {
+        this.regex = pattern.pattern();
         this.replacement = replacement;
+        this.pattern = pattern;
+    }
+
+    public RegexMapping(String regex, String replacement) {
+        this(Pattern.compile(regex), replacement);
+    }
+
+    private RegexMapping(String regex, String replacement, Pattern pattern) {
+        this.regex = regex;
+        this.replacement = replacement;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param regex       A regex that was already validated, for example when the mapping snapshot was compiled.
+     * @param replacement The replacement of the matched values.
+     *
+     * @return A new regex mapping whose pattern is only compiled when it is first used.
+     */
+    public static RegexMapping ofValidatedRegex(String regex, String replacement) {
+        return new RegexMapping(regex, replacement, null);
+    }
+
+    /**
+     * @return The compiled pattern of the regex, compiling it on the first call.
+     */
+    public Pattern getPattern() {
+        Pattern compiledPattern = pattern;
+        if (compiledPattern == null) {
+            // compiling the same regex concurrently is harmless, the patterns are equivalent and immutable
+            compiledPattern = Pattern.compile(regex);
+            pattern = compiledPattern;
+        }
+        return compiledPattern;
     }
 
 }
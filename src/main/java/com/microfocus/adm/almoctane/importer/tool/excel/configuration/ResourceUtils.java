@@ -0,0 +1,78 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.configuration;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Configuration resource utils.
+ * A configuration file is looked up on the file system first (absolute or relative to the working directory)
+ * and then on the classpath, so the files next to the jar keep working.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResourceUtils {
+
+    /**
+     * @param filePath The path to the file.
+     *
+     * @return true if the file exists on the file system or on the classpath, false otherwise.
+     */
+    public static boolean exists(String filePath) {
+        return new File(filePath).isFile() || ResourceUtils.class.getClassLoader().getResource(filePath) != null;
+    }
+
+    /**
+     * @param filePath The path to the file.
+     *
+     * @return A new stream of the file from the file system or, if it doesn't exist there, from the classpath.
+     *
+     * @throws FileNotFoundException If the file exists in neither of them.
+     */
+    public static InputStream open(String filePath) throws FileNotFoundException {
+        File file = new File(filePath);
+        if (file.isFile()) {
+            return new FileInputStream(file);
+        }
+
+        InputStream resourceInputStream = ResourceUtils.class.getClassLoader().getResourceAsStream(filePath);
+        if (resourceInputStream == null) {
+            throw new FileNotFoundException("Could not read the file " + filePath + " because it does not exist.");
+        }
+        return resourceInputStream;
+    }
+
+    /**
+     * @param filePath The path to the file.
+     *
+     * @return The content of the file from the file system or, if it doesn't exist there, from the classpath.
+     *
+     * @throws IOException If the file doesn't exist or the read fails.
+     */
+    public static byte[] readAllBytes(String filePath) throws IOException {
+        try (InputStream inputStream = open(filePath)) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+}
@@ -15,87 +15,107 @@
  */
 package com.microfocus.adm.almoctane.importer.tool.excel.converter;
 
-import com.google.common.collect.Lists;
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionInfoContainer;
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.FieldMapping;
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.RegexMapping;
+import com.google.common.collect.ImmutableList;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.InputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
+import com.microfocus.adm.almoctane.importer.tool.excel.output.OutputRowBuffer;
+import com.microfocus.adm.almoctane.importer.tool.excel.output.OutputSink;
+import com.microfocus.adm.almoctane.importer.tool.excel.output.RejectsWriter;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.ConversionPlan;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseOctaneField;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionCancelledException;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.EntityType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.FillPatternType;
-import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 
 /**
  * Common abstract class for all excel entity converters.
+ * A converter is a per-file session that holds the mutable state of one conversion,
+ * the immutable configuration is shared through the {@link ConversionEngine}.
  */
 @Slf4j
 public abstract class AbstractConverter implements Converter {
 
-    protected final ConversionProperties conversionProperties;
-    protected final ConversionMappings conversionMappings;
+    /**
+     * The mandatory output headers for all entity converters.
+     */
+    public static final List<String> MANDATORY_OUTPUT_HEADERS =
+            ImmutableList.of(BaseOctaneField.UNIQUE_ID.toString(), BaseOctaneField.TYPE.toString());
+
+    // the same for the .xls and the .xlsx output
+    private static final int MAX_TEXT_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    // the distinct values kept by the mapping histogram, a few MB at most
+    private static final int MAPPING_HISTOGRAM_VALUE_LIMIT = 10000;
+    private static final int MAPPING_REPORT_LISTED_VALUE_LIMIT = 20;
+
+    protected final ConversionEngine conversionEngine;
     protected final Map<String, String> inputFieldNameToOutputFieldName;
-    protected final Sheet inputSheet;
-    protected final Sheet outputSheet;
+    protected final InputSheet inputSheet;
+    protected final OutputRowBuffer outputRowBuffer;
     protected final Map<String, Integer> inputHeaderNameToIndex;
     protected final Map<String, Integer> outputHeaderNameToIndex;
-
-    protected AbstractConverter(ConversionInfoContainer infoContainer, int inputSheetIndex, String outputSheetName)
-            throws IOException {
-        this.conversionProperties = infoContainer.getConversionProperties();
-        this.conversionMappings = infoContainer.getConversionMappings();
-
-        this.inputFieldNameToOutputFieldName = getInputFieldNameToOutputFieldName(conversionMappings.getFieldNameToFieldMapping());
-
-        Workbook inputWorkbook = getInputWorkbook(conversionProperties.getInputFilePath());
-        Workbook outputWorkbook = getOutputWorkbook(conversionProperties.getOutputFilePath());
-
-        this.inputSheet = inputWorkbook.getSheetAt(inputSheetIndex);
-        List<String> outputHeaders = getOutputHeaders(getMandatoryOutputHeaders(), inputFieldNameToOutputFieldName);
-        this.outputSheet = createOutputSheetWithHeaders(outputWorkbook, outputSheetName, outputHeaders);
-
-        this.inputHeaderNameToIndex = getHeaderNameToIndex(inputSheet);
-        this.outputHeaderNameToIndex = getHeaderNameToIndex(outputSheet);
-    }
-
-    /**
-     * @return The mandatory output headers for all entity converters.
-     */
-    protected List<String> getMandatoryOutputHeaders() {
-        return Lists.newArrayList(BaseOctaneField.UNIQUE_ID.toString(), BaseOctaneField.TYPE.toString());
+    private final OutputSink outputSink;
+    private final OutputFormatType outputFormatType;
+    protected final ConversionPlan conversionPlan;
+    protected final ConversionProgress conversionProgress;
+    private final String outputFilePath;
+    private final BooleanSupplier cancellationRequested;
+    private final RejectsWriter rejectsWriter;
+    private final MappingHistogram mappingHistogram = new MappingHistogram(MAPPING_HISTOGRAM_VALUE_LIMIT);
+    // by the ordinal of the entity type, looked up once so a row is counted without a lookup
+    private final LongAdder[] entityCounters = new LongAdder[EntityType.values().length];
+
+    protected AbstractConverter(ConversionEngine conversionEngine, ConversionContext conversionContext, String outputSheetName) {
+        this.conversionEngine = conversionEngine;
+        this.inputFieldNameToOutputFieldName = conversionEngine.getInputFieldNameToOutputFieldName();
+        this.outputFormatType = conversionContext.getOutputFormatType();
+        this.conversionPlan = conversionContext.getConversionPlan();
+        this.conversionProgress = conversionContext.getConversionProgress();
+        this.outputSink = OutputSink.create(outputFormatType, outputSheetName, conversionPlan, conversionProgress);
+        this.outputFilePath = conversionContext.getOutputFilePath();
+        this.cancellationRequested = conversionContext.getCancellationRequested();
+
+        this.inputSheet = conversionContext.getInputSheet();
+        this.outputRowBuffer = new OutputRowBuffer(conversionEngine.getOutputHeaders().size(),
+                conversionContext.getConversionPlan().getOutputHeapBudget());
+
+        this.inputHeaderNameToIndex = inputSheet.getHeaderNameToIndex();
+        this.outputHeaderNameToIndex = conversionEngine.getOutputHeaderNameToIndex();
+        for (EntityType entityType : EntityType.values()) {
+            // the unknown type is never written
+            if (entityType.toString() != null) {
+                entityCounters[entityType.ordinal()] = ConversionMetrics.getInstance().getCounter(Metric.ENTITIES, getLabelValue(entityType));
+            }
+        }
+        try {
+            this.rejectsWriter = new RejectsWriter(conversionContext.getConversionProperties().getRejectsFilePath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Converts the value of a source field to the Octane value format.
+     * Converts the value of a source field to the Octane value format, the decision of the mapping is counted.
      *
      * @param fieldValue The value of the source field that has to be converted.
      * @param fieldName  The name of the source field that has to be converted.
@@ -103,72 +123,16 @@ public abstract class AbstractConverter implements Converter {
      * @return An octane specific value for the value of the source field.
      */
     protected String convertField(String fieldValue, String fieldName) {
-        FieldMapping fieldMapping = conversionMappings.getFieldNameToFieldMapping().get(fieldName);
-        if (fieldMapping != null) {
-            String separator = fieldMapping.getMappingsSeparator();
-            if (separator != null) {
-                return Arrays.stream(fieldValue.split(separator))
-                        .map(String::trim)
-                        .map(singleFieldValue -> getMappedValue(fieldMapping, singleFieldValue, fieldName))
-                        .filter(StringUtils::isNotEmpty)
-                        .collect(Collectors.joining(","));
-            } else {
-                return getMappedValue(fieldMapping, fieldValue, fieldName);
-            }
-        } else {
-            log.debug("No field mapping was found for field with name '{}'.", fieldName);
-            return fieldValue;
-        }
-    }
-
-    /**
-     * Converts the source field value using the mapping and regex mapping properties.
-     *
-     * @param fieldMapping The mapping of the source field.
-     * @param fieldValue   The value of the source field that has to be converted.
-     * @param fieldName    The name of the source field that has to be converted.
-     *
-     * @return An octane specific value for the value of the source field.
-     */
-    private String getMappedValue(FieldMapping fieldMapping, String fieldValue, String fieldName) {
-        // converting using mapping
-        Map<String, String> mappings = fieldMapping.getMappings();
-        String convertedValue = mappings.get(fieldValue);
-        if (convertedValue != null) {
-            log.debug("Mapped field with name '{}' from '{}' to '{}'.", fieldName, fieldValue, convertedValue);
-            return convertedValue;
-        } else {
-            String defaultValue = mappings.get(DEFAULT);
-            if (defaultValue != null) {
-                log.debug("Default mapped field with name '{}' from '{}' to '{}'.", fieldName, fieldValue, defaultValue);
-                return defaultValue;
-            }
-        }
-
-        // converting using regex mapping
-        List<RegexMapping> regexMappings = fieldMapping.getRegexMappings();
-        for (RegexMapping regexMapping : regexMappings) {
-            Pattern pattern = regexMapping.getPattern();
-            Matcher matcher = pattern.matcher(fieldValue);
-            if (matcher.matches()) {
-                String replacedValue = matcher.replaceAll(regexMapping.getReplacement());
-                log.debug("Mapped using regex '{}' field with name '{}' from '{}' to '{}'.", pattern, fieldName, fieldValue, replacedValue);
-                return replacedValue;
-            }
-        }
-
-        // returns the value unchanged if no mapping or regex mapping matches (could be the case when no mappings are specified)
-        log.debug("Unchanged value, no mapping or regex mapping for field with name '{}' and value '{}'.", fieldName, fieldValue);
-        return fieldValue;
+        return conversionEngine.convertField(fieldValue, fieldName, mappingHistogram);
     }
 
     /**
      * @param entityType The value of the {@link BaseOctaneField#TYPE} column.
      *
-     * @return A newly created {@link Row} on a new excel row. The {@link BaseOctaneField#UNIQUE_ID} will be filled with the row number.
+     * @return The number of a newly created output row. The {@link BaseOctaneField#UNIQUE_ID} will be filled with the row number.
      */
-    protected Row createRow(EntityType entityType) {
-        int uniqueId = outputSheet.getLastRowNum() + 1;
+    protected int createRow(EntityType entityType) {
+        int uniqueId = outputRowBuffer.getRowCount() + 1;
         return createRow(uniqueId, entityType);
     }
 
@@ -176,14 +140,19 @@ public abstract class AbstractConverter implements Converter {
      * @param uniqueId   The value of the {@link BaseOctaneField#UNIQUE_ID} column.
      * @param entityType The value of the {@link BaseOctaneField#TYPE} column.
      *
-     * @return A newly created {@link Row} on a new excel row.
+     * @return The number of a newly created output row.
      */
-    protected Row createRow(int uniqueId, EntityType entityType) {
-        int outputRowIndex = outputSheet.getLastRowNum() + 1;
-        Row stepRow = outputSheet.createRow(outputRowIndex);
+    protected int createRow(int uniqueId, EntityType entityType) {
+        int stepRow;
+        try {
+            stepRow = outputRowBuffer.addRow();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
         setCellValue(stepRow, BaseOctaneField.UNIQUE_ID.toString(), uniqueId);
         setCellValue(stepRow, BaseOctaneField.TYPE.toString(), entityType.toString());
+        entityCounters[entityType.ordinal()].increment();
 
         return stepRow;
     }
@@ -194,7 +163,7 @@ public abstract class AbstractConverter implements Converter {
      *
      * @return The value from the given row and column converted to the Octane format.
      */
-    protected String getMappedCellValue(Row row, String columnName) {
+    protected String getMappedCellValue(RowView row, String columnName) {
         String cellValue = getCellValue(row, columnName);
         return convertField(cellValue.trim(), columnName);
     }
@@ -203,163 +172,130 @@ public abstract class AbstractConverter implements Converter {
      * @param row        The row that contains the wanted column.
      * @param columnName The column name where the value is.
      *
-     * @return The value from the given row and column.
+     * @return The value from the given row and column, as displayed by Excel for the numeric, date, boolean and formula
+     * cells of a workbook, empty for an empty cell.
      */
-    protected String getCellValue(Row row, String columnName) {
-        Cell cell = row.getCell(inputHeaderNameToIndex.get(columnName));
-        return cell != null ? cell.getStringCellValue() : "";
+    protected String getCellValue(RowView row, String columnName) {
+        return StringUtils.defaultString(row.getValue(inputHeaderNameToIndex.get(columnName)));
     }
 
     /**
-     * @param row        The row that the value will be set to.
+     * @param row        The number of the output row that the value will be set to.
      * @param columnName The column name that the value will be set to.
      * @param value      The string value that will be set at the given row and column.
+     *
+     * @throws ConversionException If the value doesn't fit an Excel cell.
      */
-    protected void setCellValue(Row row, String columnName, String value) {
-        row.createCell(outputHeaderNameToIndex.get(columnName)).setCellValue(value);
+    protected void setCellValue(int row, String columnName, String value) {
+        checkOutputValue(value);
+        outputRowBuffer.setValue(row, outputHeaderNameToIndex.get(columnName), value);
     }
 
     /**
-     * @param row        The row that the value will be set to.
+     * @param row        The number of the output row that the value will be set to.
      * @param columnName The column name that the value will be set to.
      * @param value      The integer value that will be set at the given row and column.
      */
-    protected void setCellValue(Row row, String columnName, Integer value) {
-        row.createCell(outputHeaderNameToIndex.get(columnName)).setCellValue(value);
+    protected void setCellValue(int row, String columnName, Integer value) {
+        outputRowBuffer.setValue(row, outputHeaderNameToIndex.get(columnName), value);
     }
 
     /**
-     * The output workbook that was kept in memory will be written to the output file.
-     * Some styling will be added.
+     * @param value An output value.
      *
-     * @throws IOException If any write fails.
-     */
-    @Override
-    public void write() throws IOException {
-        Workbook outputWorkbook = outputSheet.getWorkbook();
-
-        CellStyle headerStyle = outputWorkbook.createCellStyle();
-        headerStyle.setFillForegroundColor(IndexedColors.SKY_BLUE.getIndex());
-        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-        // adding header style and limiting column width to MAXIMUM_COLUMN_WIDTH
-        if (outputSheet.getPhysicalNumberOfRows() > 0) {
-            Row headerRow = outputSheet.getRow(outputSheet.getFirstRowNum());
-            for (int columnNumber = headerRow.getFirstCellNum(); columnNumber < headerRow.getLastCellNum(); columnNumber++) {
-                headerRow.getCell(columnNumber).setCellStyle(headerStyle);
-
-                updateColumnWidth(outputSheet, columnNumber);
-            }
-        }
-
-        OutputStream fileOutputStream = FileUtils.openOutputStream(new File(conversionProperties.getOutputFilePath()));
-        outputWorkbook.write(fileOutputStream);
-        outputWorkbook.close();
-    }
-
-    /**
-     * @param sheet        The sheet that the update will be done to.
-     * @param columnNumber The column number that will have its width updated.
+     * @throws ConversionException If the value is longer than the text of an Excel cell, the writing of the output
+     *                             would fail.
      */
-    private static void updateColumnWidth(Sheet sheet, int columnNumber) {
-        sheet.autoSizeColumn(columnNumber);
-        if (sheet.getColumnWidth(columnNumber) > MAXIMUM_COLUMN_WIDTH) {
-            for (Row row : sheet) {
-                Cell cell = row.getCell(columnNumber);
-                if (cell != null) {
-                    cell.getCellStyle().setWrapText(true);
-                }
-            }
-            sheet.setColumnWidth(columnNumber, MAXIMUM_COLUMN_WIDTH);
+    protected void checkOutputValue(String value) {
+        if (value != null && value.length() > MAX_TEXT_LENGTH) {
+            throw new ConversionException("The value has " + value.length() + " characters, more than the "
+                    + MAX_TEXT_LENGTH + " characters of an Excel cell.");
         }
     }
 
     /**
-     * @param fieldNameToFieldMapping The mapping of fields.
+     * Writes an input value that could not be converted to the rejects, the failures are not logged one by one.
      *
-     * @return A map from the name of the input column name to the output column name.
+     * @param row        The input row of the value.
+     * @param columnName The input column of the value.
+     * @param value      The rejected value.
+     * @param reason     Why the value was rejected.
      */
-    private static Map<String, String> getInputFieldNameToOutputFieldName(Map<String, FieldMapping> fieldNameToFieldMapping) {
-        return fieldNameToFieldMapping.entrySet().stream()
-                .filter(entry -> entry.getValue().getTarget() != null)
-                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getTarget(), (a, b) -> a, LinkedHashMap::new));
+    protected void reject(RowView row, String columnName, String value, String reason) {
+        rejectsWriter.reject(row.getRowNumber() + 1, columnName, value, reason);
     }
 
     /**
-     * @param inputFilePath The path where the workbook will be created to.
-     *
-     * @return A new workbook that contains the data from the input file.
-     *
-     * @throws IOException If the read fails.
+     * Throws a {@link ConversionCancelledException} if the cancellation of the conversion was requested,
+     * either through the given cancellation supplier or by interrupting the converting thread.
      */
-    private static Workbook getInputWorkbook(String inputFilePath) throws IOException {
-        File file = new File(inputFilePath);
-        if (file.exists()) {
-            return WorkbookFactory.create(file);
-        } else {
-            throw new FileNotFoundException("The specified input file could not be found.");
+    protected void checkCancellation() {
+        if (cancellationRequested.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+            throw new ConversionCancelledException("The conversion was cancelled.");
         }
     }
 
     /**
-     * @param outputFilePath The path where the file will be created to.
+     * The converted rows will be written to the output file, in the format of its extension.
+     * Some styling will be added to a workbook.
      *
-     * @return A new empty workbook.
+     * @throws IOException If any write fails.
      */
-    private static Workbook getOutputWorkbook(String outputFilePath) {
-        if (outputFilePath.endsWith(".xlsx")) {
-            return new XSSFWorkbook();
-        } else if (outputFilePath.endsWith(".xls")) {
-            return new HSSFWorkbook();
-        } else {
-            throw new IllegalArgumentException("The specified output file is not an Excel file.");
+    @Override
+    public void write() throws IOException {
+        if (outputFilePath == null) {
+            throw new ConversionException("No output file path was provided, the output can only be written to a stream.");
+        }
+
+        try (OutputStream fileOutputStream = FileUtils.openOutputStream(new File(outputFilePath))) {
+            write(fileOutputStream);
         }
     }
 
     /**
-     * @param mandatoryOutputHeaders          The required header names.
-     * @param inputFieldNameToOutputFieldName A map from the name of the input column name to the output column name.
+     * The converted rows will be written to the given stream in the output format.
+     * Some styling will be added to a workbook. The given stream is not closed.
+     *
+     * @param outputStream The stream the output workbook will be written to.
      *
-     * @return The list of headers that will be used to create the output file.
+     * @throws IOException If any write fails.
      */
-    private static List<String> getOutputHeaders(List<String> mandatoryOutputHeaders, Map<String, String> inputFieldNameToOutputFieldName) {
-        Set<String> outputFieldNames = new LinkedHashSet<>();
-        outputFieldNames.addAll(mandatoryOutputHeaders);
-        outputFieldNames.addAll(inputFieldNameToOutputFieldName.values());
-        return new ArrayList<>(outputFieldNames);
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        checkCancellation();
+        try (ConversionEvent writeEvent = ConversionEvents.beginPhase(ConversionPhase.WRITE, outputFormatType.getExtension())) {
+            outputSink.write(outputRowBuffer, conversionEngine.getOutputHeaders(), outputStream);
+            outputStream.flush();
+            writeEvent.setCount(outputRowBuffer.getRowCount());
+        }
+        ConversionMetrics.getInstance().add(Metric.ROWS_WRITTEN, outputRowBuffer.getRowCount());
     }
 
     /**
-     * @param outputWorkbook The output workbook.
-     * @param sheetName      The sheet name.
-     * @param headers        The headers.
+     * Logs the counted mapping decisions and adds them to the metrics, closes the input sheet, deletes the spilled
+     * output rows and closes the rejects file.
      *
-     * @return A new sheet created in the output workbook with the given sheet name and with the given headers.
+     * @throws IOException If the input sheet, the spill file or the rejects file fails to close.
      */
-    private static Sheet createOutputSheetWithHeaders(Workbook outputWorkbook, String sheetName, List<String> headers) {
-        Sheet sheet = outputWorkbook.createSheet(sheetName);
-        Row headerRow = sheet.createRow(0);
-
-        for (int i = 0; i < headers.size(); i++) {
-            headerRow.createCell(i).setCellValue(headers.get(i));
+    @Override
+    public void close() throws IOException {
+        if (!mappingHistogram.isEmpty()) {
+            log.info("Mapping decisions:{}", StringUtils.stripEnd(mappingHistogram.formatReport(MAPPING_REPORT_LISTED_VALUE_LIMIT), null));
+            mappingHistogram.forEachOutcomeCount((fieldName, outcome, count) ->
+                    ConversionMetrics.getInstance().add(Metric.MAPPED_VALUES, count, fieldName, outcome.toString()));
+        }
+        try (InputSheet ignored = inputSheet; RejectsWriter ignoredRejects = rejectsWriter) {
+            outputRowBuffer.close();
         }
-        return sheet;
     }
 
     /**
-     * @param sheet The given sheet.
+     * @param type A constant of an enum, like an {@link EntityType}.
      *
-     * @return A map from the column name to its index.
+     * @return The constant as the value of a metric label, like manual_test.
      */
-    public static Map<String, Integer> getHeaderNameToIndex(Sheet sheet) {
-        Iterator<Row> rowIterator = sheet.iterator();
-        if (rowIterator.hasNext()) {
-            Row headerRow = rowIterator.next();
-            return StreamSupport.stream(headerRow.spliterator(), false)
-                    .collect(Collectors.toMap(Cell::getStringCellValue, Cell::getColumnIndex));
-        } else {
-            return Collections.emptyMap();
-        }
+    protected static String getLabelValue(Enum<?> type) {
+        return type.name().toLowerCase(Locale.ROOT);
     }
 
 }
@@ -15,17 +15,21 @@
  */
 package com.microfocus.adm.almoctane.importer.tool.excel.converter;
 
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionInfoContainer;
+import com.google.common.collect.ImmutableList;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseOctaneField;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.EntityType;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.StepType;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.NotImplementedException;
-import org.apache.poi.ss.usermodel.Row;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Common abstract class for all excel test converters.
@@ -33,21 +37,102 @@ import java.util.List;
 @Slf4j
 public abstract class AbstractTestConverter extends AbstractConverter {
 
+    /**
+     * The mandatory output headers for all test converters.
+     */
+    public static final List<String> MANDATORY_OUTPUT_HEADERS = ImmutableList.<String>builder()
+            .addAll(AbstractConverter.MANDATORY_OUTPUT_HEADERS)
+            .add(BaseOctaneField.STEP_TYPE.toString())
+            .add(BaseOctaneField.STEP_DESCRIPTION.toString())
+            .build();
+
     private static final String MANUAL_TESTS = "manual tests";
+    private static final String NAME = "name";
+    private static final String SHARED_TEST_NAME = "Shared steps ";
+    // the conversion of the tests is recorded by batches, an event per test would cost more than small tests take
+    private static final int TEST_BATCH_SIZE = 1000;
+
+    private final Integer sharedStepsMinLength;
+    private final int sharedStepsMinOccurrences;
+    // the steps of the tests, only recorded while the shared steps are searched
+    private StepSequences stepSequences;
+    private SharedSteps sharedSteps;
+    private int[] sharedTestUniqueIds;
+    private int testIndex = -1;
+    private int stepIndex;
+    private int runIndex;
+    private ConversionEvent testBatchEvent;
+    // by the ordinal of the step type
+    private final LongAdder[] stepCounters = new LongAdder[StepType.values().length];
+    private int testBatchStart;
 
-    protected AbstractTestConverter(ConversionInfoContainer infoContainer, int inputSheetIndex) throws IOException {
-        super(infoContainer, inputSheetIndex, MANUAL_TESTS);
+    protected AbstractTestConverter(ConversionEngine conversionEngine, ConversionContext conversionContext) {
+        super(conversionEngine, conversionContext, MANUAL_TESTS);
+        this.sharedStepsMinLength = conversionContext.getConversionProperties().getSharedStepsMinLength();
+        this.sharedStepsMinOccurrences = conversionContext.getConversionProperties().getSharedStepsMinOccurrences();
+        for (StepType stepType : StepType.values()) {
+            stepCounters[stepType.ordinal()] = ConversionMetrics.getInstance().getCounter(Metric.STEPS, getLabelValue(stepType));
+        }
     }
 
     /**
-     * @return The mandatory output headers for all test converters.
+     * Converts the input worksheet into an output worksheet kept in memory. If shared steps are enabled, the input
+     * worksheet is first read once more to find the repeated runs of steps, which are written as shared tests before
+     * the converted tests.
      */
     @Override
-    protected List<String> getMandatoryOutputHeaders() {
-        List<String> baseOutputHeaders = super.getMandatoryOutputHeaders();
-        baseOutputHeaders.add(BaseOctaneField.STEP_TYPE.toString());
-        baseOutputHeaders.add(BaseOctaneField.STEP_DESCRIPTION.toString());
-        return baseOutputHeaders;
+    public void convert() {
+        if (sharedStepsMinLength != null) {
+            try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.SHARED_STEPS_SEARCH)) {
+                addSharedTests();
+            }
+        }
+        try (ConversionEvent conversionEvent = ConversionEvents.beginPhase(ConversionPhase.CONVERSION)) {
+            convertTests();
+            endTestBatch(testIndex + 1);
+            conversionEvent.setCount(testIndex + 1);
+        }
+    }
+
+    /**
+     * Converts the tests of the input worksheet through {@link #addManualTest(RowView)} and the step methods.
+     */
+    protected abstract void convertTests();
+
+    /**
+     * @param totalRowCount The input rows the pass over the tests goes through, 0 if not known.
+     *
+     * @return The counter of the input rows done by the current pass over the tests, the search of the shared steps or
+     * the conversion.
+     */
+    protected LongAdder beginProgress(long totalRowCount) {
+        return conversionProgress.beginPhase(stepSequences != null ? ConversionPhase.SHARED_STEPS_SEARCH : ConversionPhase.CONVERSION,
+                totalRowCount);
+    }
+
+    /**
+     * Records the steps of all the tests without converting them, then writes the repeated runs of steps as shared tests.
+     */
+    private void addSharedTests() {
+        stepSequences = new StepSequences();
+        convertTests();
+        sharedSteps = SharedSteps.find(stepSequences.getSequences(), Math.max(2, sharedStepsMinLength), Math.max(2, sharedStepsMinOccurrences));
+
+        List<int[]> sharedSequences = sharedSteps.getSharedSequences();
+        sharedTestUniqueIds = new int[sharedSequences.size()];
+        for (int i = 0; i < sharedSequences.size(); i++) {
+            sharedTestUniqueIds[i] = outputRowBuffer.getRowCount() + 1;
+            int testRow = createRow(sharedTestUniqueIds[i], EntityType.MANUAL_TEST);
+            if (outputHeaderNameToIndex.containsKey(NAME)) {
+                setCellValue(testRow, NAME, SHARED_TEST_NAME + (i + 1));
+            }
+            for (int token : sharedSequences.get(i)) {
+                addStepRow(stepSequences.getStepType(token), stepSequences.getDescription(token));
+            }
+        }
+        log.info("Found {} shared tests, {} steps are replaced by {} call steps.", sharedSequences.size(),
+                sharedSteps.getReplacedStepCount(), sharedSteps.getCallStepCount());
+        stepSequences = null;
     }
 
     /**
@@ -55,25 +140,51 @@ public abstract class AbstractTestConverter extends AbstractConverter {
      *
      * @param row The row that will be converted.
      */
-    protected void addManualTest(Row row) {
-        Row testRow = createRow(EntityType.MANUAL_TEST);
+    protected void addManualTest(RowView row) {
+        if (stepSequences != null) {
+            stepSequences.startTest();
+            return;
+        }
+        testIndex++;
+        stepIndex = 0;
+        runIndex = 0;
+        if (testIndex % TEST_BATCH_SIZE == 0) {
+            endTestBatch(testIndex);
+            testBatchEvent = ConversionEvents.beginTestBatch(testIndex + 1);
+            testBatchStart = testIndex;
+        }
+
+        int testRow = createRow(EntityType.MANUAL_TEST);
 
         inputFieldNameToOutputFieldName.forEach((inputFieldName, outputFieldName) -> {
             try {
                 setCellValue(testRow, outputFieldName, getMappedCellValue(row, inputFieldName));
             } catch (ConversionException ex) {
-                log.error("Could not add test row because: {}", ex.getMessage());
+                reject(row, inputFieldName, getCellValue(row, inputFieldName), ex.getMessage());
             }
         });
     }
 
+    /**
+     * Ends the event of the current batch of tests.
+     *
+     * @param testBatchEnd The index of the first test after the batch.
+     */
+    private void endTestBatch(int testBatchEnd) {
+        if (testBatchEvent != null) {
+            testBatchEvent.setCount(testBatchEnd - testBatchStart);
+            testBatchEvent.close();
+            testBatchEvent = null;
+        }
+    }
+
     /**
      * Adds a new row to the output workbook for a simple test step.
      *
      * @param row                   The row that will be converted.
      * @param descriptionColumnName The name of the description column name.
      */
-    protected void addSimpleStep(Row row, String descriptionColumnName) {
+    protected void addSimpleStep(RowView row, String descriptionColumnName) {
         addStep(StepType.SIMPLE, row, descriptionColumnName);
     }
 
@@ -83,7 +194,7 @@ public abstract class AbstractTestConverter extends AbstractConverter {
      * @param row                   The row that will be converted.
      * @param descriptionColumnName The name of the description column name.
      */
-    protected void addValidationStep(Row row, String descriptionColumnName) {
+    protected void addValidationStep(RowView row, String descriptionColumnName) {
         addStep(StepType.VALIDATION, row, descriptionColumnName);
     }
 
@@ -94,8 +205,8 @@ public abstract class AbstractTestConverter extends AbstractConverter {
      * @param descriptionColumnName The name of the description column name.
      */
     @SuppressWarnings("unused")
-    protected void addCallStep(Row row, String descriptionColumnName) {
-        throw new NotImplementedException();
+    protected void addCallStep(RowView row, String descriptionColumnName) {
+        addStep(StepType.CALL, row, descriptionColumnName);
     }
 
     /**
@@ -105,8 +216,18 @@ public abstract class AbstractTestConverter extends AbstractConverter {
      * @param row                   The row that will be converted.
      * @param descriptionColumnName The name of the description column name.
      */
-    protected void addStep(StepType stepType, Row row, String descriptionColumnName) {
+    protected void addStep(StepType stepType, RowView row, String descriptionColumnName) {
         String description = getCellValue(row, descriptionColumnName);
+        try {
+            checkOutputValue(description);
+        } catch (ConversionException ex) {
+            // the step is kept without its description, so the steps of the test keep their order
+            if (stepSequences == null) {
+                // the steps are read twice when the shared steps are searched, they are rejected once
+                reject(row, descriptionColumnName, description, ex.getMessage());
+            }
+            description = "";
+        }
         addStep(stepType, description);
     }
 
@@ -118,15 +239,48 @@ public abstract class AbstractTestConverter extends AbstractConverter {
      */
     // UNIQUE_ID, TYPE, STEP_TYPE and STEP_DESCRIPTION are the only fields that are used by a test step
     protected void addStep(StepType stepType, String description) {
-        Row stepRow = createRow(EntityType.STEP);
-        setCellValue(stepRow, BaseOctaneField.STEP_TYPE.toString(), stepType.toString());
-        try {
-            setCellValue(stepRow, BaseOctaneField.STEP_DESCRIPTION.toString(), cleanStepDescription(description));
-        } catch (ConversionException ex) {
-            log.error("Could not add test step row because: {}", ex.getMessage());
+        if (stepSequences != null) {
+            stepSequences.addStep(stepType, cleanStepDescription(description));
+        } else if (!replaceBySharedSteps()) {
+            addStepRow(stepType, cleanStepDescription(description));
         }
     }
 
+    /**
+     * Replaces the current step of the current test by a call step if it belongs to a run of shared steps.
+     * The call step is added for the first step of the run, the other steps of the run are skipped.
+     *
+     * @return true if the current step is replaced.
+     */
+    private boolean replaceBySharedSteps() {
+        List<SharedSteps.StepRun> runs = sharedSteps != null ? sharedSteps.getRunsBySequence().get(testIndex) : null;
+        int position = stepIndex++;
+        if (runs == null || runIndex >= runs.size() || position < runs.get(runIndex).getStart()) {
+            return false;
+        }
+
+        SharedSteps.StepRun run = runs.get(runIndex);
+        if (position == run.getStart()) {
+            addStepRow(StepType.CALL, String.valueOf(sharedTestUniqueIds[run.getSharedIndex()]));
+        }
+        if (stepIndex == run.getStart() + run.getLength()) {
+            runIndex++;
+        }
+        return true;
+    }
+
+    /**
+     * @param stepType    The type of the step that will be added.
+     * @param description The description of the step, already cleaned.
+     */
+    private void addStepRow(StepType stepType, String description) {
+        int stepRow = createRow(EntityType.STEP);
+        setCellValue(stepRow, BaseOctaneField.STEP_TYPE.toString(), stepType.toString());
+        stepCounters[stepType.ordinal()].increment();
+        // the description of an input step was checked by addStep
+        setCellValue(stepRow, BaseOctaneField.STEP_DESCRIPTION.toString(), description);
+    }
+
     /**
      * Converts invalid step description characters.
      *
@@ -0,0 +1,46 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.InputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.ConversionPlan;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * The per-file state a converter session is created with.
+ */
+@Getter
+@AllArgsConstructor
+public class ConversionContext {
+
+    // closed with the converter
+    private final InputSheet inputSheet;
+    private final OutputFormatType outputFormatType;
+    // null if the output can only be written to a stream
+    private final String outputFilePath;
+    private final ConversionProperties conversionProperties;
+    private final ConversionPlan conversionPlan;
+    private final BooleanSupplier cancellationRequested;
+    // the progress of this session only
+    private final ConversionProgress conversionProgress;
+
+}
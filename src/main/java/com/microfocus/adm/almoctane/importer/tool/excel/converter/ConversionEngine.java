@@ -0,0 +1,433 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionInfoContainer;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.FieldMapping;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.RegexMapping;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.CsvFormat;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.CsvInputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.InputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.StreamingInputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.TestLinkInputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.WorkbookInputSheet;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ProgressReporter;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.ConversionPlan;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.InputEstimate;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.InputPreflight;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.WorkbookUtils;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable and thread-safe conversion configuration, built once and shared by any number of concurrent conversions.
+ * Each conversion of a file runs in its own lightweight {@link Converter} session created by this engine.
+ */
+@Getter
+public class ConversionEngine {
+
+    private final ExcelFormatType inputFileFormat;
+    private final ConversionMappings conversionMappings;
+    private final Map<String, String> inputFieldNameToOutputFieldName;
+    private final List<String> outputHeaders;
+    private final Map<String, Integer> outputHeaderNameToIndex;
+
+    public ConversionEngine(ExcelFormatType inputFileFormat, ConversionMappings conversionMappings) {
+        this.inputFileFormat = inputFileFormat;
+        // the engine is shared by concurrent sessions, the mappings it hands out can't be changed under them
+        this.conversionMappings = conversionMappings.unmodifiableCopy();
+        this.inputFieldNameToOutputFieldName = Collections.unmodifiableMap(
+                getInputFieldNameToOutputFieldName(this.conversionMappings.getFieldNameToFieldMapping()));
+        this.outputHeaders = Collections.unmodifiableList(
+                getOutputHeaders(ConverterFactory.getMandatoryOutputHeaders(inputFileFormat), inputFieldNameToOutputFieldName));
+        this.outputHeaderNameToIndex = Collections.unmodifiableMap(getOutputHeaderNameToIndex(outputHeaders));
+    }
+
+    /**
+     * @param infoContainer The already checked configuration.
+     *
+     * @return A new engine for the format and the mappings of the given configuration.
+     */
+    public static ConversionEngine create(ConversionInfoContainer infoContainer) {
+        return new ConversionEngine(infoContainer.getConversionProperties().getInputFileFormatType(), infoContainer.getConversionMappings());
+    }
+
+    /**
+     * @param conversionProperties The properties that contain the input and the output file paths.
+     *
+     * @return A new converter session that reads the input file and writes the output file from the given properties,
+     * the input file is read as CSV if its extension is .csv and as XML for the TestLink format. The workbook of the
+     * Octane format is streamed instead of opened in memory.
+     *
+     * @throws IOException If the input file can't be read.
+     */
+    public Converter newConverter(ConversionProperties conversionProperties) throws IOException {
+        return newConverter(conversionProperties, new ConversionProgress());
+    }
+
+    /**
+     * @param conversionProperties The properties that contain the input and the output file paths.
+     * @param conversionProgress   The progress of the new session, read by a {@link ProgressReporter} of this session only.
+     *
+     * @return A new converter session that reads the input file and writes the output file from the given properties,
+     * see {@link #newConverter(ConversionProperties)}.
+     *
+     * @throws IOException If the input file can't be read.
+     */
+    public Converter newConverter(ConversionProperties conversionProperties, ConversionProgress conversionProgress) throws IOException {
+        String outputFilePath = conversionProperties.getOutputFilePath();
+        OutputFormatType outputFormatType = OutputFormatType.fromFilePath(outputFilePath);
+        File inputFile = new File(conversionProperties.getInputFilePath());
+        boolean streamedWorkbook = inputFileFormat == ExcelFormatType.OCTANE && !CsvFormat.isCsvFile(inputFile);
+        InputEstimate inputEstimate = streamedWorkbook ? InputPreflight.estimate(inputFile).streamed() : InputPreflight.estimate(inputFile);
+        ConversionPlan conversionPlan = ConversionPlan.create(inputEstimate, outputFormatType, conversionProperties);
+        InputSheet inputSheet;
+        try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.WORKBOOK_OPEN, inputFile.getPath())) {
+            conversionProgress.beginPhase(ConversionPhase.WORKBOOK_OPEN, 0);
+            // a CSV file, a TestLink export and an Octane workbook are streamed, only their header is read here
+            if (inputFileFormat == ExcelFormatType.TESTLINK) {
+                inputSheet = new TestLinkInputSheet(inputFile, inputEstimate.getEstimatedRowCount());
+            } else if (CsvFormat.isCsvFile(inputFile)) {
+                inputSheet = new CsvInputSheet(inputFile, conversionProperties.getInputCsvFormat(), inputEstimate.getEstimatedRowCount());
+            } else if (streamedWorkbook) {
+                inputSheet = new StreamingInputSheet(inputFile, ConverterFactory.getInputSheetIndex(inputFileFormat),
+                        conversionProperties.getInputCsvFormat(), inputEstimate.getEstimatedRowCount());
+            } else {
+                inputSheet = newInputSheet(WorkbookUtils.openReadOnly(inputFile));
+            }
+        }
+        return newConverter(new ConversionContext(inputSheet, outputFormatType, outputFilePath, conversionProperties, conversionPlan,
+                () -> false, conversionProgress));
+    }
+
+    /**
+     * @param inputStream           The stream the input workbook is read from.
+     * @param outputFormatType      The format of the output workbook.
+     * @param cancellationRequested Supplier checked during the conversion, if it returns true the conversion is cancelled.
+     *
+     * @return A new converter session that reads its input from the given stream and can only write to a stream.
+     *
+     * @throws IOException If the input stream can't be read.
+     */
+    public Converter newConverter(InputStream inputStream, OutputFormatType outputFormatType, BooleanSupplier cancellationRequested)
+            throws IOException {
+        return newConverter(inputStream, outputFormatType, ConversionProperties.getDefaultProperties(), cancellationRequested);
+    }
+
+    /**
+     * @param inputStream           The stream the input workbook is read from.
+     * @param outputFormatType      The format of the output workbook.
+     * @param conversionProperties  The properties that tune the conversion, the file paths of the properties are ignored.
+     * @param cancellationRequested Supplier checked during the conversion, if it returns true the conversion is cancelled.
+     *
+     * @return A new converter session that reads its input from the given stream and can only write to a stream.
+     *
+     * @throws IOException If the input stream can't be read.
+     */
+    public Converter newConverter(InputStream inputStream, OutputFormatType outputFormatType, ConversionProperties conversionProperties,
+                                  BooleanSupplier cancellationRequested) throws IOException {
+        ConversionProgress conversionProgress = new ConversionProgress();
+        Workbook inputWorkbook;
+        try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.WORKBOOK_OPEN)) {
+            conversionProgress.beginPhase(ConversionPhase.WORKBOOK_OPEN, 0);
+            inputWorkbook = WorkbookUtils.open(inputStream);
+        }
+        return newConverter(inputWorkbook, outputFormatType, null, conversionProperties, cancellationRequested, conversionProgress);
+    }
+
+    /**
+     * @param inputWorkbook        The input workbook, closed with the converter.
+     * @param outputFilePath       The path of the output file.
+     * @param conversionProperties The properties that tune the conversion, the file paths of the properties are ignored.
+     *
+     * @return A new converter session that converts the given workbook and writes the given output file.
+     *
+     * @throws IOException If closing the input workbook fails after the session couldn't be created.
+     */
+    public Converter newConverter(Workbook inputWorkbook, String outputFilePath, ConversionProperties conversionProperties) throws IOException {
+        return newConverter(inputWorkbook, OutputFormatType.fromFilePath(outputFilePath), outputFilePath, conversionProperties, () -> false,
+                new ConversionProgress());
+    }
+
+    /**
+     * @param inputWorkbook         The input workbook, closed with the converter or if the session can't be created.
+     * @param outputFormatType      The format of the output.
+     * @param outputFilePath        The path of the output file, null if the output can only be written to a stream.
+     * @param conversionProperties  The properties that tune the conversion.
+     * @param cancellationRequested Supplier checked during the conversion, if it returns true the conversion is cancelled.
+     * @param conversionProgress    The progress of the new session.
+     *
+     * @return A new converter session that converts the given workbook.
+     *
+     * @throws IOException If closing the input workbook fails after the session couldn't be created.
+     */
+    private Converter newConverter(Workbook inputWorkbook, OutputFormatType outputFormatType, String outputFilePath,
+                                   ConversionProperties conversionProperties, BooleanSupplier cancellationRequested,
+                                   ConversionProgress conversionProgress) throws IOException {
+        ConversionPlan conversionPlan;
+        try {
+            conversionPlan = ConversionPlan.create(InputPreflight.estimate(inputWorkbook), outputFormatType, conversionProperties);
+        } catch (RuntimeException ex) {
+            inputWorkbook.close();
+            throw ex;
+        }
+        return newConverter(new ConversionContext(newInputSheet(inputWorkbook), outputFormatType, outputFilePath, conversionProperties,
+                conversionPlan, cancellationRequested, conversionProgress));
+    }
+
+    /**
+     * @param inputWorkbook The input workbook, closed if its sheet can't be read.
+     *
+     * @return The sheet of the input workbook read by the converter of the format of this engine.
+     *
+     * @throws IOException If closing the input workbook fails after its sheet couldn't be read.
+     */
+    private InputSheet newInputSheet(Workbook inputWorkbook) throws IOException {
+        try {
+            return new WorkbookInputSheet(inputWorkbook, ConverterFactory.getInputSheetIndex(inputFileFormat));
+        } catch (RuntimeException ex) {
+            inputWorkbook.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param conversionContext The per-file state of the conversion.
+     *
+     * @return A new converter session, the input sheet is closed if the session can't be created.
+     *
+     * @throws IOException         If closing the input sheet fails after the session couldn't be created.
+     * @throws ConversionException If the input sheet lacks a column of the input format or a mapped field.
+     */
+    private Converter newConverter(ConversionContext conversionContext) throws IOException {
+        try {
+            // the sessions that don't go through the IntegrityChecker, like the stream conversions, are checked here too
+            checkInputHeader(conversionContext.getInputSheet().getHeaderNameToIndex());
+            return ConverterFactory.getConverter(this, conversionContext);
+        } catch (RuntimeException ex) {
+            conversionContext.getInputSheet().close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param inputHeaderNameToIndex The header of the input sheet of a new session.
+     *
+     * @throws ConversionException If a column read by the converter of the input format or a mapped field isn't in the header.
+     */
+    private void checkInputHeader(Map<String, Integer> inputHeaderNameToIndex) {
+        Set<String> missingHeaderNames = new LinkedHashSet<>(ConverterFactory.getMandatoryInputHeaders(inputFileFormat));
+        missingHeaderNames.addAll(conversionMappings.getFieldNameToFieldMapping().keySet());
+        missingHeaderNames.removeAll(inputHeaderNameToIndex.keySet());
+        if (!missingHeaderNames.isEmpty()) {
+            throw new ConversionException("The input sheet has no '" + String.join("', '", missingHeaderNames) + "' column, the columns of the "
+                    + inputFileFormat + " format and the mapped fields must be in its header.");
+        }
+    }
+
+    /**
+     * Converts the value of a source field to the Octane value format.
+     *
+     * @param fieldValue The value of the source field that has to be converted.
+     * @param fieldName  The name of the source field that has to be converted.
+     *
+     * @return An octane specific value for the value of the source field.
+     *
+     * @throws ConversionException If a regex mapping can't replace the value.
+     */
+    public String convertField(String fieldValue, String fieldName) {
+        return convertField(fieldValue, fieldName, null);
+    }
+
+    /**
+     * Converts the value of a source field to the Octane value format and counts the decision of the mapping.
+     *
+     * @param fieldValue       The value of the source field that has to be converted.
+     * @param fieldName        The name of the source field that has to be converted.
+     * @param mappingHistogram The histogram that counts the conversion of each single value of a mapped field, null
+     *                         if the decisions aren't counted.
+     *
+     * @return An octane specific value for the value of the source field.
+     *
+     * @throws ConversionException If a regex mapping can't replace the value.
+     */
+    public String convertField(String fieldValue, String fieldName, MappingHistogram mappingHistogram) {
+        FieldMapping fieldMapping = conversionMappings.getFieldNameToFieldMapping().get(fieldName);
+        if (fieldMapping != null) {
+            // a field that is only renamed would fill the histogram with values that are all copied
+            MappingHistogram fieldHistogram = fieldMapping.getMappings().isEmpty() && fieldMapping.getRegexMappings().isEmpty()
+                    ? null : mappingHistogram;
+            String separator = fieldMapping.getMappingsSeparator();
+            if (separator != null) {
+                return Arrays.stream(fieldValue.split(separator))
+                        .map(String::trim)
+                        .map(singleFieldValue -> getMappedValue(fieldMapping, singleFieldValue, fieldName, fieldHistogram))
+                        .filter(StringUtils::isNotEmpty)
+                        .collect(Collectors.joining(","));
+            } else {
+                return getMappedValue(fieldMapping, fieldValue, fieldName, fieldHistogram);
+            }
+        } else {
+            return fieldValue;
+        }
+    }
+
+    /**
+     * Converts a single value of a source field the way {@link #convertField(String, String)} converts each of its
+     * values, without counting the decision.
+     *
+     * @param fieldName  The name of a source field.
+     * @param fieldValue A single value of the source field, already trimmed and split by the mappings separator.
+     *
+     * @return The converted value and the part of the field mapping that converted it, {@link MappingOutcome#NONE} if
+     * the field has no mapping or the value is left unchanged.
+     *
+     * @throws ConversionException If a regex mapping can't replace the value.
+     */
+    public MappedValue mapValue(String fieldName, String fieldValue) {
+        FieldMapping fieldMapping = conversionMappings.getFieldNameToFieldMapping().get(fieldName);
+        return fieldMapping != null ? mapValue(fieldMapping, fieldValue, fieldName) : new MappedValue(MappingOutcome.NONE, fieldValue);
+    }
+
+    /**
+     * Converts the source field value using the mapping and regex mapping properties and counts the decision.
+     *
+     * @param fieldMapping     The mapping of the source field.
+     * @param fieldValue       The value of the source field that has to be converted.
+     * @param fieldName        The name of the source field that has to be converted.
+     * @param mappingHistogram The histogram that counts the conversion, null if the decisions aren't counted.
+     *
+     * @return An octane specific value for the value of the source field.
+     *
+     * @throws ConversionException If a regex mapping can't replace the value.
+     */
+    // the decisions are counted instead of logged, a debug line per value made a large conversion many times slower
+    private static String getMappedValue(FieldMapping fieldMapping, String fieldValue, String fieldName, MappingHistogram mappingHistogram) {
+        MappedValue mappedValue = mapValue(fieldMapping, fieldValue, fieldName);
+        if (mappingHistogram != null) {
+            mappingHistogram.count(fieldName, fieldValue, mappedValue.getOutcome(), mappedValue.getValue());
+        }
+        return mappedValue.getValue();
+    }
+
+    /**
+     * Converts the source field value using the mapping and regex mapping properties, the only place where the
+     * decision between the exact, the default and the regex mappings is made.
+     *
+     * @param fieldMapping The mapping of the source field.
+     * @param fieldValue   The value of the source field that has to be converted.
+     * @param fieldName    The name of the source field that has to be converted.
+     *
+     * @return The converted value and the part of the field mapping that converted it.
+     *
+     * @throws ConversionException If a regex mapping can't replace the value.
+     */
+    private static MappedValue mapValue(FieldMapping fieldMapping, String fieldValue, String fieldName) {
+        // converting using mapping
+        Map<String, String> mappings = fieldMapping.getMappings();
+        String mappedValue = mappings.get(fieldValue);
+        String defaultValue;
+        if (mappedValue != null) {
+            return new MappedValue(MappingOutcome.EXACT, mappedValue);
+        } else if ((defaultValue = mappings.get(Converter.DEFAULT)) != null) {
+            return new MappedValue(MappingOutcome.DEFAULT, defaultValue);
+        } else if (!fieldMapping.getRegexMappings().isEmpty()) {
+            // converting using regex mapping
+            try (ConversionEvent regexMappingEvent = ConversionEvents.beginRegexMapping(fieldName)) {
+                for (RegexMapping regexMapping : fieldMapping.getRegexMappings()) {
+                    Pattern pattern = regexMapping.getPattern();
+                    Matcher matcher = pattern.matcher(fieldValue);
+                    if (matcher.matches()) {
+                        regexMappingEvent.setDetail(pattern.pattern());
+                        try {
+                            return new MappedValue(MappingOutcome.REGEX, matcher.replaceAll(regexMapping.getReplacement()));
+                        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+                            // a replacement referring to a missing group, the value is rejected instead of failing the conversion
+                            throw new ConversionException("The replacement '" + regexMapping.getReplacement() + "' of the regex '" + pattern
+                                    + "' of the field '" + fieldName + "' fails: " + ex.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+        // returns the value unchanged if no mapping or regex mapping matches (could be the case when no mappings are specified)
+        return new MappedValue(MappingOutcome.NONE, fieldValue);
+    }
+
+    /**
+     * @param fieldNameToFieldMapping The mapping of fields.
+     *
+     * @return A map from the name of the input column name to the output column name.
+     */
+    private static Map<String, String> getInputFieldNameToOutputFieldName(Map<String, FieldMapping> fieldNameToFieldMapping) {
+        return fieldNameToFieldMapping.entrySet().stream()
+                .filter(entry -> entry.getValue().getTarget() != null)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getTarget(), (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * @param mandatoryOutputHeaders          The required header names.
+     * @param inputFieldNameToOutputFieldName A map from the name of the input column name to the output column name.
+     *
+     * @return The list of headers that will be used to create the output file.
+     */
+    private static List<String> getOutputHeaders(List<String> mandatoryOutputHeaders, Map<String, String> inputFieldNameToOutputFieldName) {
+        Set<String> outputFieldNames = new LinkedHashSet<>();
+        outputFieldNames.addAll(mandatoryOutputHeaders);
+        outputFieldNames.addAll(inputFieldNameToOutputFieldName.values());
+        return new ArrayList<>(outputFieldNames);
+    }
+
+    /**
+     * @param outputHeaders The headers of the output sheet, in order.
+     *
+     * @return A map from each output header to its column index.
+     */
+    private static Map<String, Integer> getOutputHeaderNameToIndex(List<String> outputHeaders) {
+        Map<String, Integer> outputHeaderNameToIndex = new LinkedHashMap<>();
+        for (int i = 0; i < outputHeaders.size(); i++) {
+            outputHeaderNameToIndex.put(outputHeaders.get(i), i);
+        }
+        return outputHeaderNameToIndex;
+    }
+
+}
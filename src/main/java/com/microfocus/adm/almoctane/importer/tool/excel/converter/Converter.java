@@ -15,13 +15,15 @@
  */
 package com.microfocus.adm.almoctane.importer.tool.excel.converter;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Common interface for all excel entity converters.
  */
 @SuppressWarnings("UnnecessaryInterfaceModifier")
-public interface Converter {
+public interface Converter extends Closeable {
 
     public static final int MAXIMUM_COLUMN_WIDTH = 20000;
     public static final String DEFAULT = "default";
@@ -38,4 +40,13 @@ public interface Converter {
      */
     public void write() throws IOException;
 
+    /**
+     * The output workbook that was kept in memory will be written to the given stream, the stream is not closed.
+     *
+     * @param outputStream The stream the output workbook will be written to.
+     *
+     * @throws IOException If any write fails.
+     */
+    public void write(OutputStream outputStream) throws IOException;
+
 }
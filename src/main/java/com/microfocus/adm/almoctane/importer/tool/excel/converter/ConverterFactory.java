@@ -15,13 +15,21 @@
  */
 package com.microfocus.adm.almoctane.importer.tool.excel.converter;
 
+import com.google.common.collect.ImmutableList;
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionInfoContainer;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseQTestField;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseTestLinkField;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Factory that returns converters based on the type used in the given {@link ConversionInfoContainer}.
@@ -37,14 +45,127 @@ public class ConverterFactory {
      * @throws IOException If the {@link Converter} constructor fails.
      */
     public static Converter getConverter(ConversionInfoContainer infoContainer) throws IOException {
-        ExcelFormatType inputFileFormat = infoContainer.getConversionProperties().getInputFileFormatType();
+        return ConversionEngine.create(infoContainer).newConverter(infoContainer.getConversionProperties());
+    }
+
+    /**
+     * @param inputFileFormat       The format of the input workbook.
+     * @param conversionMappings    The mappings used for the conversion.
+     * @param inputStream           The stream the input workbook is read from.
+     * @param outputFormatType      The format of the output workbook.
+     * @param cancellationRequested Supplier checked during the conversion, if it returns true the conversion is cancelled.
+     *
+     * @return A newly created converter that reads its input from the given stream.
+     *
+     * @throws IOException If the {@link Converter} constructor fails.
+     */
+    public static Converter getConverter(ExcelFormatType inputFileFormat, ConversionMappings conversionMappings, InputStream inputStream,
+                                         OutputFormatType outputFormatType, BooleanSupplier cancellationRequested) throws IOException {
+        return new ConversionEngine(inputFileFormat, conversionMappings).newConverter(inputStream, outputFormatType, cancellationRequested);
+    }
+
+    /**
+     * @param conversionEngine  The engine that holds the configuration of the conversion.
+     * @param conversionContext The per-file state of the conversion.
+     *
+     * @return A newly created converter session for the format of the given engine.
+     */
+    static Converter getConverter(ConversionEngine conversionEngine, ConversionContext conversionContext) {
+        ExcelFormatType inputFileFormat = conversionEngine.getInputFileFormat();
         switch (inputFileFormat) {
             case QTEST:
-                return new QTestConverter(infoContainer);
+                return new QTestConverter(conversionEngine, conversionContext);
+            case TESTLINK:
+                return new TestLinkConverter(conversionEngine, conversionContext);
+            case OCTANE:
+                return new OctaneConverter(conversionEngine, conversionContext);
             case UNKNOWN:
             default:
-                throw new ConversionException("Input file format type '" + inputFileFormat + "' wasn't provided or it isn't supported.");
+                throw unsupportedFormat(inputFileFormat);
         }
     }
 
+    /**
+     * @param inputFileFormat The format of the input workbook.
+     *
+     * @return The mandatory output headers of the converter used for the given format.
+     */
+    static List<String> getMandatoryOutputHeaders(ExcelFormatType inputFileFormat) {
+        switch (inputFileFormat) {
+            case QTEST:
+            case TESTLINK:
+            case OCTANE:
+                return AbstractTestConverter.MANDATORY_OUTPUT_HEADERS;
+            case UNKNOWN:
+            default:
+                throw unsupportedFormat(inputFileFormat);
+        }
+    }
+
+    /**
+     * @param inputFileFormat The format of the input workbook.
+     *
+     * @return The input columns read by the converter used for the given format, whatever the mappings.
+     */
+    static List<String> getMandatoryInputHeaders(ExcelFormatType inputFileFormat) {
+        switch (inputFileFormat) {
+            case QTEST:
+                return ImmutableList.of(BaseQTestField.ID.toString(), BaseQTestField.TEST_STEP_DESCRIPTION.toString(),
+                        BaseQTestField.TEST_STEP_EXPECTED_RESULT.toString());
+            case TESTLINK:
+                return ImmutableList.of(BaseTestLinkField.INTERNAL_ID.toString(), BaseTestLinkField.ACTIONS.toString(),
+                        BaseTestLinkField.EXPECTED_RESULTS.toString());
+            case OCTANE:
+                return AbstractTestConverter.MANDATORY_OUTPUT_HEADERS;
+            case UNKNOWN:
+            default:
+                throw unsupportedFormat(inputFileFormat);
+        }
+    }
+
+    /**
+     * @param inputFileFormat The format of the input workbook.
+     *
+     * @return The index of the sheet read by the converter used for the given format.
+     */
+    public static int getInputSheetIndex(ExcelFormatType inputFileFormat) {
+        switch (inputFileFormat) {
+            case QTEST:
+                return QTestConverter.INPUT_SHEET_INDEX;
+            case TESTLINK:
+                return TestLinkConverter.INPUT_SHEET_INDEX;
+            case OCTANE:
+                return OctaneConverter.INPUT_SHEET_INDEX;
+            case UNKNOWN:
+            default:
+                throw unsupportedFormat(inputFileFormat);
+        }
+    }
+
+    /**
+     * @param inputFileFormat The format of the input workbook.
+     *
+     * @return The name of the input column that holds the id of the test of a row, for the given format.
+     */
+    public static String getInputIdColumnName(ExcelFormatType inputFileFormat) {
+        switch (inputFileFormat) {
+            case QTEST:
+                return BaseQTestField.ID.toString();
+            case TESTLINK:
+                return BaseTestLinkField.INTERNAL_ID.toString();
+            case UNKNOWN:
+            default:
+                throw unsupportedFormat(inputFileFormat);
+        }
+    }
+
+    /**
+     * @param inputFileFormat The format of the input workbook.
+     *
+     * @return The exception thrown for formats that have no converter.
+     */
+    private static ConversionException unsupportedFormat(ExcelFormatType inputFileFormat) {
+        return new ConversionException("Input file format type '" + inputFileFormat + "' wasn't provided or it isn't supported.");
+    }
+
 }
@@ -0,0 +1,31 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A single value converted by a field mapping, and the part of the mapping that converted it.
+ */
+@Getter
+@AllArgsConstructor
+public class MappedValue {
+
+    private final MappingOutcome outcome;
+    private final String value;
+
+}
@@ -0,0 +1,162 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the mapping decisions of a conversion: for each mapped field, how many times each input value was converted,
+ * by which part of the mapping and to which output value. The value of a field always gets the same decision, so a
+ * value is counted with a map lookup and no allocation. At most a given number of distinct values of each field are
+ * kept, so a field with unique values doesn't leave the other fields out, the values beyond it are only counted by outcome.
+ * Not thread-safe, each conversion counts its own decisions.
+ */
+public class MappingHistogram {
+
+    private final int valueLimit;
+    private final Map<String, FieldHistogram> fieldNameToHistogram = new LinkedHashMap<>();
+
+    /**
+     * @param valueLimit The number of distinct values kept for each field.
+     */
+    public MappingHistogram(int valueLimit) {
+        this.valueLimit = valueLimit;
+    }
+
+    /**
+     * @param fieldName   The name of the mapped field.
+     * @param inputValue  A single input value, already trimmed and split by the mappings separator.
+     * @param outcome     The part of the mapping that converted the value.
+     * @param outputValue The converted value.
+     */
+    public void count(String fieldName, String inputValue, MappingOutcome outcome, String outputValue) {
+        FieldHistogram fieldHistogram = fieldNameToHistogram.computeIfAbsent(fieldName, name -> new FieldHistogram());
+        fieldHistogram.outcomeCounts[outcome.ordinal()]++;
+        Decision decision = fieldHistogram.valueToDecision.get(inputValue);
+        if (decision != null) {
+            decision.count++;
+        } else if (fieldHistogram.valueToDecision.size() < valueLimit) {
+            fieldHistogram.valueToDecision.put(inputValue, new Decision(outcome, outputValue));
+        } else {
+            fieldHistogram.uncountedValueCount++;
+        }
+    }
+
+    /**
+     * @param visitor Visits the number of values of each field converted by each outcome, the outcomes without values
+     *                are skipped.
+     */
+    public void forEachOutcomeCount(OutcomeCountVisitor visitor) {
+        fieldNameToHistogram.forEach((fieldName, fieldHistogram) -> {
+            for (MappingOutcome outcome : MappingOutcome.values()) {
+                long outcomeCount = fieldHistogram.outcomeCounts[outcome.ordinal()];
+                if (outcomeCount > 0) {
+                    visitor.visit(fieldName, outcome, outcomeCount);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true if no decision was counted.
+     */
+    public boolean isEmpty() {
+        return fieldNameToHistogram.isEmpty();
+    }
+
+    /**
+     * @param listedValueLimit The number of the most frequent values listed for each field.
+     *
+     * @return The counts by field and outcome, followed by the most frequent values of each field and their conversion.
+     */
+    public String formatReport(int listedValueLimit) {
+        StringBuilder report = new StringBuilder();
+        fieldNameToHistogram.forEach((fieldName, fieldHistogram) -> {
+            report.append(String.format("%nField '%s':", fieldName));
+            for (MappingOutcome outcome : MappingOutcome.values()) {
+                long outcomeCount = fieldHistogram.outcomeCounts[outcome.ordinal()];
+                if (outcomeCount > 0) {
+                    report.append(String.format(" %d %s,", outcomeCount, outcome));
+                }
+            }
+            report.setLength(report.length() - 1);
+            report.append(String.format(", %d distinct values%s%n", fieldHistogram.valueToDecision.size(),
+                    fieldHistogram.uncountedValueCount > 0 ? " kept" : ""));
+
+            List<Map.Entry<String, Decision>> decisions = new ArrayList<>(fieldHistogram.valueToDecision.entrySet());
+            decisions.sort(Comparator.comparingLong((Map.Entry<String, Decision> entry) -> entry.getValue().count).reversed()
+                    .thenComparing(Map.Entry::getKey));
+            decisions.stream().limit(listedValueLimit).forEach(entry -> report.append(String.format("  %8d  %-7s '%s' -> '%s'%n",
+                    entry.getValue().count, entry.getValue().outcome, entry.getKey(), entry.getValue().outputValue)));
+            if (decisions.size() > listedValueLimit) {
+                report.append(String.format("  ... %d more%n", decisions.size() - listedValueLimit));
+            }
+            if (fieldHistogram.uncountedValueCount > 0) {
+                report.append(String.format("  %d values not listed, the limit of %d distinct values of a field was reached%n",
+                        fieldHistogram.uncountedValueCount, valueLimit));
+            }
+        });
+        return report.toString();
+    }
+
+    /**
+     * Visits the count of an outcome of a field.
+     */
+    @FunctionalInterface
+    public interface OutcomeCountVisitor {
+
+        /**
+         * @param fieldName The name of the mapped field.
+         * @param outcome   The part of the mapping that converted the values.
+         * @param count     The number of values converted by the outcome.
+         */
+        void visit(String fieldName, MappingOutcome outcome, long count);
+
+    }
+
+    /**
+     * The decisions of a mapped field.
+     */
+    private static class FieldHistogram {
+
+        private final Map<String, Decision> valueToDecision = new HashMap<>();
+        private final long[] outcomeCounts = new long[MappingOutcome.values().length];
+        private long uncountedValueCount;
+
+    }
+
+    /**
+     * How an input value is converted and how many times it was.
+     */
+    private static class Decision {
+
+        private final MappingOutcome outcome;
+        private final String outputValue;
+        private long count = 1;
+
+        private Decision(MappingOutcome outcome, String outputValue) {
+            this.outcome = outcome;
+            this.outputValue = outputValue;
+        }
+
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Which part of a field mapping converted a value.
+ */
+@AllArgsConstructor
+public enum MappingOutcome {
+    EXACT("exact"),
+    DEFAULT("default"),
+    REGEX("regex"),
+    NONE("none");
+
+    private final String typeName;
+
+    @Override
+    public String toString() {
+        return typeName;
+    }
+}
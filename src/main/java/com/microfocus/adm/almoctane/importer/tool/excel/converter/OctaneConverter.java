@@ -0,0 +1,177 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.google.common.collect.ImmutableSet;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseOctaneField;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.EntityType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.StepType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Octane specific converter, remaps the manual tests sheet of an Octane import workbook. The rows are converted in a
+ * single pass and keep their order, their unique id, their type and the type of their steps. The mappings are applied
+ * to the fields of the tests and to the description of the steps.
+ */
+public class OctaneConverter extends AbstractConverter {
+
+    public static final int INPUT_SHEET_INDEX = 0;
+
+    private static final String MANUAL_TESTS = "manual tests";
+    // the fields of a step, not mapped on the row of a test
+    private static final Set<String> STEP_FIELDS =
+            ImmutableSet.of(BaseOctaneField.STEP_TYPE.toString(), BaseOctaneField.STEP_DESCRIPTION.toString());
+
+    // by the ordinal of the step type
+    private final LongAdder[] stepCounters = new LongAdder[StepType.values().length];
+    // the last test, or the last row that isn't a step, was rejected, its steps are rejected with it
+    private boolean testRejected;
+
+    public OctaneConverter(ConversionEngine conversionEngine, ConversionContext conversionContext) {
+        super(conversionEngine, conversionContext, MANUAL_TESTS);
+        for (StepType stepType : StepType.values()) {
+            stepCounters[stepType.ordinal()] = ConversionMetrics.getInstance().getCounter(Metric.STEPS, getLabelValue(stepType));
+        }
+    }
+
+    /**
+     * Converts the rows of the input sheet in order. A row whose type is neither a manual test nor a step is rejected, as
+     * is a row whose unique id isn't an integer, a rejected test or entity of another type is rejected with its steps.
+     */
+    @Override
+    public void convert() {
+        try (ConversionEvent conversionEvent = ConversionEvents.beginPhase(ConversionPhase.CONVERSION)) {
+            LongAdder convertedRowCount = conversionProgress.beginPhase(ConversionPhase.CONVERSION, inputSheet.getLastRowNumber());
+            inputSheet.forEachRow(row -> {
+                checkCancellation();
+                convertRow(row);
+                convertedRowCount.increment();
+                return true;
+            });
+            conversionEvent.setCount(convertedRowCount.sum());
+            ConversionMetrics.getInstance().add(Metric.ROWS_READ, convertedRowCount.sum());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param row An input row, a manual test or a step.
+     */
+    private void convertRow(RowView row) {
+        String type = getCellValue(row, BaseOctaneField.TYPE.toString()).trim();
+        EntityType entityType = getEntityType(type);
+        if (entityType == EntityType.UNKNOWN) {
+            reject(row, BaseOctaneField.TYPE.toString(), type, "The row is neither a " + EntityType.MANUAL_TEST + " nor a "
+                    + EntityType.STEP + ", it is skipped with its steps.");
+            // any row that isn't a step starts a new entity, its steps don't belong to the previous test
+            testRejected = true;
+            return;
+        }
+
+        String uniqueId = getCellValue(row, BaseOctaneField.UNIQUE_ID.toString()).trim();
+        if (entityType == EntityType.STEP && testRejected) {
+            reject(row, BaseOctaneField.UNIQUE_ID.toString(), uniqueId, "The test of the step was rejected, the step is skipped.");
+            return;
+        }
+        Integer id = parseUniqueId(uniqueId);
+        if (id == null) {
+            // an id made up here could be the id of a later row, which the call steps would then mix up
+            reject(row, BaseOctaneField.UNIQUE_ID.toString(), uniqueId, "The unique id isn't an integer, "
+                    + (entityType == EntityType.MANUAL_TEST ? "the test and its steps are skipped." : "the step is skipped."));
+            testRejected = entityType == EntityType.MANUAL_TEST;
+            return;
+        }
+        testRejected = false;
+
+        int outputRow = createRow(id, entityType);
+        if (entityType == EntityType.MANUAL_TEST) {
+            inputFieldNameToOutputFieldName.forEach((inputFieldName, outputFieldName) -> {
+                // the unique id, the type and the step fields are written by the converter, even if a mapping targets them
+                if (!STEP_FIELDS.contains(inputFieldName) && !AbstractTestConverter.MANDATORY_OUTPUT_HEADERS.contains(outputFieldName)) {
+                    try {
+                        setCellValue(outputRow, outputFieldName, getMappedCellValue(row, inputFieldName));
+                    } catch (ConversionException ex) {
+                        reject(row, inputFieldName, getCellValue(row, inputFieldName), ex.getMessage());
+                    }
+                }
+            });
+        } else {
+            String stepType = getCellValue(row, BaseOctaneField.STEP_TYPE.toString());
+            setCellValue(outputRow, BaseOctaneField.STEP_TYPE.toString(), stepType);
+            countStep(stepType);
+            // the description keeps its spaces unless its mapping changes it, the steps of a test keep their order
+            String description = getCellValue(row, BaseOctaneField.STEP_DESCRIPTION.toString());
+            try {
+                setCellValue(outputRow, BaseOctaneField.STEP_DESCRIPTION.toString(),
+                        convertField(description, BaseOctaneField.STEP_DESCRIPTION.toString()));
+            } catch (ConversionException ex) {
+                reject(row, BaseOctaneField.STEP_DESCRIPTION.toString(), description, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param uniqueId The trimmed unique id of an input row, which the call steps refer to.
+     *
+     * @return The unique id as an integer, null if it isn't one.
+     */
+    private static Integer parseUniqueId(String uniqueId) {
+        try {
+            return Integer.parseInt(uniqueId);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @param stepType The step type of an output step, counted if it is a known one.
+     */
+    private void countStep(String stepType) {
+        for (StepType knownStepType : StepType.values()) {
+            if (knownStepType.toString().equals(stepType)) {
+                stepCounters[knownStepType.ordinal()].increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param type The value of the {@link BaseOctaneField#TYPE} column.
+     *
+     * @return The entity type written as the given value, {@link EntityType#UNKNOWN} if there is none.
+     */
+    private static EntityType getEntityType(String type) {
+        for (EntityType entityType : EntityType.values()) {
+            if (type.equals(entityType.toString())) {
+                return entityType;
+            }
+        }
+        return EntityType.UNKNOWN;
+    }
+
+}
@@ -15,49 +15,103 @@
  */
 package com.microfocus.adm.almoctane.importer.tool.excel.converter;
 
-import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionInfoContainer;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowGrouper;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
 import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseQTestField;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.ss.usermodel.Row;
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * QTest specific converter.
  */
+@Slf4j
 public class QTestConverter extends AbstractTestConverter {
 
     public static final int INPUT_SHEET_INDEX = 1;
 
-    public QTestConverter(ConversionInfoContainer infoContainer) throws IOException {
-        super(infoContainer, INPUT_SHEET_INDEX);
+    // the rows are grouped with a quarter of the output heap budget
+    private static final int GROUPING_BUDGET_DIVISOR = 4;
+
+    private RowGrouper rowGrouper;
+
+    public QTestConverter(ConversionEngine conversionEngine, ConversionContext conversionContext) {
+        super(conversionEngine, conversionContext);
     }
 
     /**
-     * Converts the input worksheet into an output worksheet kept in memory.
+     * Converts the tests of the input worksheet, the rows of a test don't need to be contiguous, they are grouped by id.
      */
     @Override
-    public void convert() {
-        Iterator<Row> testCasesRowIterator = inputSheet.iterator();
-        if (testCasesRowIterator.hasNext()) {
-            testCasesRowIterator.next(); // skip header row
-
-            String lastId = null;
-            while (testCasesRowIterator.hasNext()) {
-                Row row = testCasesRowIterator.next();
-
-                String currentId = getCellValue(row, BaseQTestField.ID.toString());
-                if (StringUtils.isNotBlank(currentId)) {
-                    if (!currentId.equals(lastId)) {
-                        addManualTest(row);
-                        lastId = currentId;
-                    }
-                    addSimpleStep(row, BaseQTestField.TEST_STEP_DESCRIPTION.toString());
-                    addValidationStep(row, BaseQTestField.TEST_STEP_EXPECTED_RESULT.toString());
+    protected void convertTests() {
+        try {
+            RowGrouper groupedRows = getRowGrouper();
+            LongAdder convertedRowCount = beginProgress(groupedRows.getRowCount());
+            groupedRows.forEachRow((rowNumber, firstOfGroup) -> {
+                checkCancellation();
+                RowView row = inputSheet.getRow(rowNumber);
+                if (firstOfGroup) {
+                    addManualTest(row);
                 }
+                addSimpleStep(row, BaseQTestField.TEST_STEP_DESCRIPTION.toString());
+                addValidationStep(row, BaseQTestField.TEST_STEP_EXPECTED_RESULT.toString());
+                convertedRowCount.increment();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The rows of the input worksheet that have an id, grouped by id, the grouping is done on the first call.
+     *
+     * @throws IOException If spilling the groups fails.
+     */
+    private RowGrouper getRowGrouper() throws IOException {
+        if (rowGrouper == null) {
+            rowGrouper = new RowGrouper(conversionPlan.getOutputHeapBudget() / GROUPING_BUDGET_DIVISOR);
+            try (ConversionEvent readingEvent = ConversionEvents.beginPhase(ConversionPhase.INPUT_READING)) {
+                // the header row isn't counted
+                LongAdder readRowCount = conversionProgress.beginPhase(ConversionPhase.INPUT_READING, inputSheet.getLastRowNumber());
+                inputSheet.forEachRow(row -> {
+                    checkCancellation();
+                    readRowCount.increment();
+
+                    String currentId = getCellValue(row, BaseQTestField.ID.toString());
+                    if (StringUtils.isNotBlank(currentId)) {
+                        rowGrouper.add(currentId, row.getRowNumber());
+                    }
+                    return true;
+                });
+                readingEvent.setCount(readRowCount.sum());
+                ConversionMetrics.getInstance().add(Metric.ROWS_READ, readRowCount.sum());
+            }
+            if (rowGrouper.getInterleavedGroupCount() > 0) {
+                log.info("The rows of some tests aren't contiguous, {} times a test continues after rows of other tests, the rows are grouped by id.",
+                        rowGrouper.getInterleavedGroupCount());
             }
         }
+        return rowGrouper;
+    }
+
+    /**
+     * Closes the input sheet, deletes the spilled output rows and the temporary files of the grouping.
+     *
+     * @throws IOException If a file fails to close.
+     */
+    @Override
+    public void close() throws IOException {
+        try (RowGrouper ignored = rowGrouper) {
+            super.close();
+        }
     }
 
 }
@@ -0,0 +1,364 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The runs of steps repeated across the tests, each run is written once as a shared test and replaced by a call step
+ * wherever it occurs.
+ * The runs are found in O(n * minimum length) time, n being the total number of steps: the windows of minimum length
+ * are counted by their rolling hash, each group of identical windows that can't be extended to the left is extended
+ * to the right as long as enough of its occurrences agree, and the resulting runs are picked greedily, the biggest
+ * saving first.
+ */
+@Getter
+class SharedSteps {
+
+    private static final long HASH_BASE = 1_000_003L;
+
+    /**
+     * The steps of each shared test.
+     */
+    private final List<int[]> sharedSequences = new ArrayList<>();
+
+    /**
+     * The replaced runs of each test that has any, by index of the test, ordered by their start.
+     */
+    private final Map<Integer, List<StepRun>> runsBySequence = new HashMap<>();
+
+    /**
+     * A run of steps of a test replaced by a call to a shared test.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class StepRun {
+
+        private final int start;
+        private final int length;
+        private final int sharedIndex;
+
+    }
+
+    /**
+     * A run of steps that occurs identically at several positions.
+     */
+    @AllArgsConstructor
+    private static class Candidate {
+
+        private final int length;
+        private final long[] occurrences;
+
+        private long getSaving() {
+            return SharedSteps.getSaving(length, occurrences.length);
+        }
+
+    }
+
+    /**
+     * @return The number of output rows saved by sharing a run: the occurrences become call steps and the run is written
+     * once with the row of its shared test.
+     */
+    private static long getSaving(int length, int occurrenceCount) {
+        return (long) occurrenceCount * (length - 1) - length - 1;
+    }
+
+    /**
+     * @param sequences      The steps of each test.
+     * @param minLength      The minimum number of steps of a shared run, at least 2.
+     * @param minOccurrences The minimum number of occurrences of a shared run, at least 2.
+     *
+     * @return The shared runs and where they are replaced.
+     */
+    static SharedSteps find(List<int[]> sequences, int minLength, int minOccurrences) {
+        Map<Long, Integer> windowCounts = countWindows(sequences, minLength);
+        Map<Long, List<Long>> frequentWindows = getFrequentWindows(sequences, minLength, minOccurrences, windowCounts);
+        windowCounts.clear();
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (List<Long> occurrences : frequentWindows.values()) {
+            for (Candidate candidate : getCandidates(sequences, minLength, minOccurrences, occurrences)) {
+                if (candidate.getSaving() > 0) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Candidate::getSaving).reversed()
+                .thenComparingLong(candidate -> candidate.occurrences[0]));
+
+        SharedSteps sharedSteps = new SharedSteps();
+        sharedSteps.select(sequences, candidates, minOccurrences);
+        return sharedSteps;
+    }
+
+    /**
+     * @return The number of occurrences of each window of the given length, by rolling hash.
+     */
+    private static Map<Long, Integer> countWindows(List<int[]> sequences, int windowLength) {
+        Map<Long, Integer> windowCounts = new HashMap<>();
+        long highestPower = getHighestPower(windowLength);
+        for (int[] sequence : sequences) {
+            long hash = 0;
+            for (int position = 0; position < sequence.length; position++) {
+                hash = rollHash(hash, sequence, position, windowLength, highestPower);
+                if (position >= windowLength - 1) {
+                    windowCounts.merge(hash, 1, Integer::sum);
+                }
+            }
+        }
+        return windowCounts;
+    }
+
+    /**
+     * @return The occurrences, encoded by {@link #encode(int, int)}, of the windows that occur at least the minimum number of times.
+     */
+    private static Map<Long, List<Long>> getFrequentWindows(List<int[]> sequences, int windowLength, int minOccurrences,
+                                                           Map<Long, Integer> windowCounts) {
+        Map<Long, List<Long>> frequentWindows = new HashMap<>();
+        long highestPower = getHighestPower(windowLength);
+        for (int index = 0; index < sequences.size(); index++) {
+            int[] sequence = sequences.get(index);
+            long hash = 0;
+            for (int position = 0; position < sequence.length; position++) {
+                hash = rollHash(hash, sequence, position, windowLength, highestPower);
+                if (position >= windowLength - 1 && windowCounts.get(hash) >= minOccurrences) {
+                    frequentWindows.computeIfAbsent(hash, key -> new ArrayList<>()).add(encode(index, position - windowLength + 1));
+                }
+            }
+        }
+        return frequentWindows;
+    }
+
+    /**
+     * Extends the window to the right while at least the minimum number of its occurrences agree on the next step.
+     * Each time some occurrences disagree, the run shared by all the previous occurrences is a candidate, then the
+     * extension continues with the biggest group of occurrences that agree.
+     *
+     * @param occurrences The occurrences of windows with the same hash.
+     *
+     * @return The candidate runs that start with the window, none if the window is always preceded by the same step,
+     * then it is part of the runs of the window that starts one step earlier.
+     */
+    private static List<Candidate> getCandidates(List<int[]> sequences, int windowLength, int minOccurrences, List<Long> occurrences) {
+        // drops the windows that only share the hash with the first one
+        int[] firstSequence = sequences.get(getIndex(occurrences.get(0)));
+        int firstPosition = getPosition(occurrences.get(0));
+        List<Long> matchingOccurrences = new ArrayList<>(occurrences.size());
+        for (long occurrence : occurrences) {
+            if (regionMatches(firstSequence, firstPosition, sequences.get(getIndex(occurrence)), getPosition(occurrence), windowLength)) {
+                matchingOccurrences.add(occurrence);
+            }
+        }
+        if (matchingOccurrences.size() < minOccurrences || hasCommonStep(sequences, matchingOccurrences, -1)) {
+            return Collections.emptyList();
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        List<Long> currentOccurrences = matchingOccurrences;
+        int length = windowLength;
+        while (true) {
+            currentOccurrences = dropOverlapping(currentOccurrences, length);
+            if (currentOccurrences.size() < minOccurrences) {
+                return candidates;
+            }
+            if (hasCommonStep(sequences, currentOccurrences, length)) {
+                length++;
+                continue;
+            }
+            candidates.add(new Candidate(length, currentOccurrences.stream().mapToLong(Long::longValue).toArray()));
+            List<Long> agreeingOccurrences = getBiggestAgreeingGroup(sequences, currentOccurrences, length);
+            if (agreeingOccurrences.size() < minOccurrences) {
+                return candidates;
+            }
+            currentOccurrences = agreeingOccurrences;
+            length++;
+        }
+    }
+
+    /**
+     * Keeps the occurrences that don't overlap the previous kept occurrence in the same test, they couldn't be replaced
+     * both. Dropping them also stops the runs of a single repeated step from being extended one step at a time.
+     *
+     * @param occurrences The occurrences, ordered by test and position.
+     * @param length      The length of the run.
+     *
+     * @return The occurrences without overlaps, in the same order.
+     */
+    private static List<Long> dropOverlapping(List<Long> occurrences, int length) {
+        List<Long> keptOccurrences = new ArrayList<>(occurrences.size());
+        int lastIndex = -1;
+        int lastEnd = 0;
+        for (long occurrence : occurrences) {
+            int index = getIndex(occurrence);
+            int position = getPosition(occurrence);
+            if (index != lastIndex || position >= lastEnd) {
+                keptOccurrences.add(occurrence);
+                lastIndex = index;
+                lastEnd = position + length;
+            }
+        }
+        return keptOccurrences.size() == occurrences.size() ? occurrences : keptOccurrences;
+    }
+
+    /**
+     * @param offset The offset of the step from the start of the occurrences.
+     *
+     * @return The biggest group of occurrences that have the same step at the given offset.
+     */
+    private static List<Long> getBiggestAgreeingGroup(List<int[]> sequences, List<Long> occurrences, int offset) {
+        Map<Integer, List<Long>> occurrencesByStep = new HashMap<>();
+        for (long occurrence : occurrences) {
+            int[] sequence = sequences.get(getIndex(occurrence));
+            int position = getPosition(occurrence) + offset;
+            if (position < sequence.length) {
+                occurrencesByStep.computeIfAbsent(sequence[position], key -> new ArrayList<>()).add(occurrence);
+            }
+        }
+        return occurrencesByStep.values().stream()
+                .max(Comparator.comparingInt(List::size))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * @param offset The offset of the step from the start of the occurrences, -1 for the step before them.
+     *
+     * @return true if all the occurrences have the same step at the given offset.
+     */
+    private static boolean hasCommonStep(List<int[]> sequences, List<Long> occurrences, int offset) {
+        int commonStep = -1;
+        for (long occurrence : occurrences) {
+            int[] sequence = sequences.get(getIndex(occurrence));
+            int position = getPosition(occurrence) + offset;
+            if (position < 0 || position >= sequence.length || (commonStep >= 0 && sequence[position] != commonStep)) {
+                return false;
+            }
+            commonStep = sequence[position];
+        }
+        return true;
+    }
+
+    /**
+     * Picks the candidates, the biggest saving first, on the steps that aren't replaced yet.
+     */
+    private void select(List<int[]> sequences, List<Candidate> candidates, int minOccurrences) {
+        Map<Integer, BitSet> replacedSteps = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            List<Long> freeOccurrences = new ArrayList<>();
+            int lastIndex = -1;
+            int lastEnd = 0;
+            for (long occurrence : candidate.occurrences) {
+                int index = getIndex(occurrence);
+                int position = getPosition(occurrence);
+                BitSet replaced = replacedSteps.get(index);
+                boolean overlapsPrevious = index == lastIndex && position < lastEnd;
+                if (!overlapsPrevious && (replaced == null || replaced.get(position, position + candidate.length).isEmpty())) {
+                    freeOccurrences.add(occurrence);
+                    lastIndex = index;
+                    lastEnd = position + candidate.length;
+                }
+            }
+            if (freeOccurrences.size() < minOccurrences || getSaving(candidate.length, freeOccurrences.size()) <= 0) {
+                continue;
+            }
+
+            int sharedIndex = sharedSequences.size();
+            long firstOccurrence = freeOccurrences.get(0);
+            int firstPosition = getPosition(firstOccurrence);
+            int[] firstSequence = sequences.get(getIndex(firstOccurrence));
+            int[] sharedSequence = new int[candidate.length];
+            System.arraycopy(firstSequence, firstPosition, sharedSequence, 0, candidate.length);
+            sharedSequences.add(sharedSequence);
+            for (long occurrence : freeOccurrences) {
+                int index = getIndex(occurrence);
+                int position = getPosition(occurrence);
+                replacedSteps.computeIfAbsent(index, key -> new BitSet()).set(position, position + candidate.length);
+                runsBySequence.computeIfAbsent(index, key -> new ArrayList<>()).add(new StepRun(position, candidate.length, sharedIndex));
+            }
+        }
+        runsBySequence.values().forEach(runs -> runs.sort(Comparator.comparingInt(StepRun::getStart)));
+    }
+
+    /**
+     * Adds the step at the given position to the hash of the window that ends there and removes the step that leaves the window.
+     */
+    private static long rollHash(long hash, int[] sequence, int position, int windowLength, long highestPower) {
+        if (position >= windowLength) {
+            hash -= mix(sequence[position - windowLength]) * highestPower;
+        }
+        return hash * HASH_BASE + mix(sequence[position]);
+    }
+
+    private static long getHighestPower(int windowLength) {
+        long power = 1;
+        for (int i = 1; i < windowLength; i++) {
+            power *= HASH_BASE;
+        }
+        return power;
+    }
+
+    /**
+     * Spreads the consecutive step numbers over the 64 bits, the arithmetic is modulo 2^64.
+     */
+    private static long mix(int token) {
+        long mixed = (token + 1) * 0x9E3779B97F4A7C15L;
+        return mixed ^ (mixed >>> 29);
+    }
+
+    private static boolean regionMatches(int[] first, int firstPosition, int[] second, int secondPosition, int length) {
+        for (int i = 0; i < length; i++) {
+            if (first[firstPosition + i] != second[secondPosition + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long encode(int index, int position) {
+        return ((long) index << 32) | position;
+    }
+
+    private static int getIndex(long occurrence) {
+        return (int) (occurrence >>> 32);
+    }
+
+    private static int getPosition(long occurrence) {
+        return (int) occurrence;
+    }
+
+    /**
+     * @return The number of steps replaced by call steps.
+     */
+    int getReplacedStepCount() {
+        return runsBySequence.values().stream().flatMap(List::stream).mapToInt(StepRun::getLength).sum();
+    }
+
+    /**
+     * @return The number of call steps.
+     */
+    int getCallStepCount() {
+        return runsBySequence.values().stream().mapToInt(List::size).sum();
+    }
+
+}
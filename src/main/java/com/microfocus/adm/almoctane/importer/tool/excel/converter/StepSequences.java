@@ -0,0 +1,87 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.StepType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The steps of the converted tests, each step encoded as the number of its distinct step type and description.
+ */
+class StepSequences {
+
+    private final Map<String, Integer> stepToToken = new HashMap<>();
+    private final List<StepType> tokenStepTypes = new ArrayList<>();
+    private final List<String> tokenDescriptions = new ArrayList<>();
+    private final List<int[]> sequences = new ArrayList<>();
+    private int[] currentSequence = new int[16];
+    private int currentLength = -1;
+
+    /**
+     * Ends the steps of the previous test and starts the steps of a new one.
+     */
+    void startTest() {
+        endTest();
+        currentLength = 0;
+    }
+
+    /**
+     * @param stepType    The type of the step.
+     * @param description The description of the step, as written to the output.
+     */
+    void addStep(StepType stepType, String description) {
+        Integer token = stepToToken.get(stepType.ordinal() + description);
+        if (token == null) {
+            token = tokenStepTypes.size();
+            stepToToken.put(stepType.ordinal() + description, token);
+            tokenStepTypes.add(stepType);
+            tokenDescriptions.add(description);
+        }
+        if (currentLength == currentSequence.length) {
+            currentSequence = Arrays.copyOf(currentSequence, currentLength * 2);
+        }
+        currentSequence[currentLength++] = token;
+    }
+
+    /**
+     * @return The steps of each test, in the order of the tests.
+     */
+    List<int[]> getSequences() {
+        endTest();
+        return sequences;
+    }
+
+    StepType getStepType(int token) {
+        return tokenStepTypes.get(token);
+    }
+
+    String getDescription(int token) {
+        return tokenDescriptions.get(token);
+    }
+
+    private void endTest() {
+        if (currentLength >= 0) {
+            sequences.add(Arrays.copyOf(currentSequence, currentLength));
+            currentLength = -1;
+        }
+    }
+
+}
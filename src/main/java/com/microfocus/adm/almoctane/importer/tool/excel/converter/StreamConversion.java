@@ -0,0 +1,92 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Entry point for conversions that read from and write to streams instead of the files from the configuration.
+ * The given streams are neither opened nor closed by the conversion. When the rows don't fit the heap budget of the
+ * conversion plan, the buffered output rows, the grouped input rows and the sheet of a streamed output workbook are
+ * written to temporary files, which are deleted once the conversion ends.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class StreamConversion {
+
+    /**
+     * Converts a {@link ExcelFormatType#QTEST} workbook into an {@link OutputFormatType#XLSX} Octane workbook.
+     *
+     * @param inputStream        The stream the input workbook is read from.
+     * @param outputStream       The stream the output workbook is written to.
+     * @param conversionMappings The mappings used for the conversion.
+     *
+     * @throws IOException If the read or the write fails.
+     */
+    public static void convert(InputStream inputStream, OutputStream outputStream, ConversionMappings conversionMappings)
+            throws IOException {
+        convert(inputStream, outputStream, conversionMappings, ExcelFormatType.QTEST, OutputFormatType.XLSX, () -> false);
+    }
+
+    /**
+     * Converts the input workbook into an Octane workbook.
+     * The conversion can be cancelled through the given supplier or by interrupting the converting thread,
+     * in which case a {@link com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionCancelledException} is thrown.
+     *
+     * @param inputStream           The stream the input workbook is read from.
+     * @param outputStream          The stream the output workbook is written to.
+     * @param conversionMappings    The mappings used for the conversion.
+     * @param inputFileFormat       The format of the input workbook.
+     * @param outputFormatType      The format of the output workbook.
+     * @param cancellationRequested Supplier checked during the conversion, if it returns true the conversion is cancelled.
+     *
+     * @throws IOException If the read or the write fails.
+     */
+    public static void convert(InputStream inputStream, OutputStream outputStream, ConversionMappings conversionMappings,
+                               ExcelFormatType inputFileFormat, OutputFormatType outputFormatType,
+                               BooleanSupplier cancellationRequested) throws IOException {
+        convert(new ConversionEngine(inputFileFormat, conversionMappings), inputStream, outputStream, outputFormatType, cancellationRequested);
+    }
+
+    /**
+     * Converts the input workbook into an Octane workbook using an already built engine.
+     * The same engine can be used by any number of concurrent conversions.
+     *
+     * @param conversionEngine      The engine that holds the configuration of the conversion.
+     * @param inputStream           The stream the input workbook is read from.
+     * @param outputStream          The stream the output workbook is written to.
+     * @param outputFormatType      The format of the output workbook.
+     * @param cancellationRequested Supplier checked during the conversion, if it returns true the conversion is cancelled.
+     *
+     * @throws IOException If the read or the write fails.
+     */
+    public static void convert(ConversionEngine conversionEngine, InputStream inputStream, OutputStream outputStream,
+                               OutputFormatType outputFormatType, BooleanSupplier cancellationRequested) throws IOException {
+        try (Converter converter = conversionEngine.newConverter(inputStream, outputFormatType, cancellationRequested)) {
+            converter.convert();
+            converter.write(outputStream);
+        }
+    }
+
+}
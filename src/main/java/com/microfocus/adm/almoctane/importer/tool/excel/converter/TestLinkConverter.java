@@ -0,0 +1,78 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseTestLinkField;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TestLink specific converter, reads the rows of a TestLink XML export, a row per step with the fields of its test case.
+ */
+public class TestLinkConverter extends AbstractTestConverter {
+
+    // the rows of an export written to a workbook, by the previewer, are read from its first sheet
+    public static final int INPUT_SHEET_INDEX = 0;
+
+    private String testId;
+    private boolean rowsCounted;
+
+    public TestLinkConverter(ConversionEngine conversionEngine, ConversionContext conversionContext) {
+        super(conversionEngine, conversionContext);
+    }
+
+    /**
+     * Converts the test cases in a single pass over the rows, the rows of a test case are contiguous in the export so a
+     * test starts on each row with a new internal id. The actions of a step are converted to a simple step and its
+     * expected results to a validation step, the empty ones are skipped.
+     */
+    @Override
+    protected void convertTests() {
+        LongAdder convertedRowCount = beginProgress(inputSheet.getLastRowNumber());
+        testId = null;
+        try {
+            inputSheet.forEachRow(row -> {
+                checkCancellation();
+                String currentId = getCellValue(row, BaseTestLinkField.INTERNAL_ID.toString());
+                if (testId == null || !testId.equals(currentId)) {
+                    testId = currentId;
+                    addManualTest(row);
+                }
+                if (StringUtils.isNotBlank(getCellValue(row, BaseTestLinkField.ACTIONS.toString()))) {
+                    addSimpleStep(row, BaseTestLinkField.ACTIONS.toString());
+                }
+                if (StringUtils.isNotBlank(getCellValue(row, BaseTestLinkField.EXPECTED_RESULTS.toString()))) {
+                    addValidationStep(row, BaseTestLinkField.EXPECTED_RESULTS.toString());
+                }
+                convertedRowCount.increment();
+                return true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // the rows are read again when the shared steps are searched, they are counted once
+        if (!rowsCounted) {
+            ConversionMetrics.getInstance().add(Metric.ROWS_READ, convertedRowCount.sum());
+            rowsCounted = true;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * A reusable {@link RowView} over an array of values, filled cell by cell by the streaming readers or pointed to rows
+ * already read as arrays. The array of a filled row is kept for the next rows and only grows, so reading a row
+ * allocates nothing but its values.
+ */
+public class ArrayRowView implements RowView {
+
+    private static final int INITIAL_CELL_CAPACITY = 16;
+
+    @Getter
+    private int rowNumber = -1;
+    @Getter
+    private int cellCount;
+    private String[] values = new String[INITIAL_CELL_CAPACITY];
+    // false while the view points to an array of the caller, which is never written
+    private boolean ownValues = true;
+
+    /**
+     * Empties the view for the cells of the next row.
+     *
+     * @param rowNumber The number of the next row.
+     */
+    public void clear(int rowNumber) {
+        if (!ownValues) {
+            values = new String[INITIAL_CELL_CAPACITY];
+            ownValues = true;
+        } else {
+            Arrays.fill(values, 0, cellCount, null);
+        }
+        this.rowNumber = rowNumber;
+        this.cellCount = 0;
+    }
+
+    /**
+     * Sets a cell of the row started by {@link #clear(int)}.
+     *
+     * @param columnIndex The index of the column of the cell.
+     * @param value       The text of the cell.
+     */
+    public void setValue(int columnIndex, String value) {
+        if (columnIndex >= values.length) {
+            values = Arrays.copyOf(values, Math.max(columnIndex + 1, values.length * 2));
+        }
+        values[columnIndex] = value;
+        cellCount = Math.max(cellCount, columnIndex + 1);
+    }
+
+    /**
+     * Points the view to a row already read, the array is read but not copied.
+     *
+     * @param rowNumber The number of the row.
+     * @param values    The values of the row, null for the empty cells.
+     *
+     * @return This view.
+     */
+    public ArrayRowView set(int rowNumber, String[] values) {
+        this.rowNumber = rowNumber;
+        this.values = values;
+        this.cellCount = values.length;
+        this.ownValues = false;
+        return this;
+    }
+
+    /**
+     * @return true if no cell of the row was set.
+     */
+    public boolean isEmpty() {
+        return cellCount == 0;
+    }
+
+    @Override
+    public String getValue(int columnIndex) {
+        return columnIndex >= 0 && columnIndex < cellCount ? values[columnIndex] : null;
+    }
+
+}
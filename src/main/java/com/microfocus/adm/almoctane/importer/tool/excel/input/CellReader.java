@@ -0,0 +1,139 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import lombok.AllArgsConstructor;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.ExcelStyleDateFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+import java.text.Format;
+import java.util.Arrays;
+
+/**
+ * Reads the value of any cell as the text Excel displays, like {@link DataFormatter#formatCellValue(Cell)}, but
+ * the format of each cell style is parsed once and kept by the index of the style, and the formula cells are read
+ * from their cached result instead of being evaluated.
+ * Not thread-safe, each conversion uses its own reader.
+ */
+public class CellReader {
+
+    private final DataFormatter dataFormatter = new DataFormatter();
+    private StyleFormat[] styleFormats = new StyleFormat[64];
+
+    /**
+     * @param cell A cell, null for a missing cell.
+     *
+     * @return The displayed text of the cell, empty for a missing or blank cell.
+     */
+    public String read(Cell cell) {
+        if (cell == null) {
+            return "";
+        }
+        CellType cellType = cell.getCellType();
+        if (cellType == CellType.FORMULA) {
+            cellType = cell.getCachedFormulaResultType();
+        }
+        switch (cellType) {
+            case STRING:
+                return cell.getStringCellValue();
+            case NUMERIC:
+                return formatNumber(cell);
+            case BOOLEAN:
+                return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+            case ERROR:
+                return FormulaError.forInt(cell.getErrorCellValue()).getString();
+            case BLANK:
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * @param cell A cell with a numeric value or a formula with a numeric cached result.
+     *
+     * @return The number or the date formatted with the format of the cell style.
+     */
+    private String formatNumber(Cell cell) {
+        double value = cell.getNumericCellValue();
+        StyleFormat styleFormat = getStyleFormat(cell);
+        if (styleFormat.format == null || styleFormat.date && !DateUtil.isValidExcelDate(value)) {
+            // the format depends on the value, like [>100]0;0.0, or a date format holds a number out of the date range,
+            // it is parsed again by the data formatter
+            return dataFormatter.formatRawCellContents(value, styleFormat.formatIndex, styleFormat.formatString);
+        } else if (styleFormat.date) {
+            if (styleFormat.format instanceof ExcelStyleDateFormatter) {
+                ((ExcelStyleDateFormatter) styleFormat.format).setDateToBeFormatted(value);
+            }
+            return styleFormat.format.format(cell.getDateCellValue());
+        }
+        String formatted = styleFormat.format.format(value);
+        // Excel shows the sign of a positive exponent, as DataFormatter does
+        int exponentIndex = formatted.indexOf('E');
+        if (exponentIndex >= 0 && exponentIndex + 1 < formatted.length() && Character.isDigit(formatted.charAt(exponentIndex + 1))) {
+            return formatted.substring(0, exponentIndex + 1) + '+' + formatted.substring(exponentIndex + 1);
+        }
+        return formatted;
+    }
+
+    /**
+     * @param cell A numeric cell.
+     *
+     * @return The format of the style of the cell, parsed on the first use of the style.
+     */
+    private StyleFormat getStyleFormat(Cell cell) {
+        CellStyle cellStyle = cell.getCellStyle();
+        int styleIndex = cellStyle.getIndex() & 0xFFFF;
+        if (styleIndex >= styleFormats.length) {
+            styleFormats = Arrays.copyOf(styleFormats, Math.max(styleIndex + 1, styleFormats.length * 2));
+        }
+        StyleFormat styleFormat = styleFormats[styleIndex];
+        if (styleFormat == null) {
+            int formatIndex = cellStyle.getDataFormat();
+            String formatString = cellStyle.getDataFormatString();
+            boolean date = DateUtil.isADateFormat(formatIndex, formatString);
+            // a format with several sections picks its section from the value, a single section format is the same for any value
+            boolean cacheable = formatString != null && formatString.indexOf(';') < 0;
+            if (cacheable && date && !DateUtil.isValidExcelDate(cell.getNumericCellValue())) {
+                // the data formatter creates the date format only for a valid date, the style is parsed on its next valid date
+                return new StyleFormat(formatIndex, formatString, true, null);
+            }
+            Format format = cacheable ? dataFormatter.createFormat(cell) : null;
+            styleFormat = new StyleFormat(formatIndex, formatString, date, format);
+            styleFormats[styleIndex] = styleFormat;
+        }
+        return styleFormat;
+    }
+
+    /**
+     * The parsed format of a cell style.
+     */
+    @AllArgsConstructor
+    private static class StyleFormat {
+
+        private final int formatIndex;
+        private final String formatString;
+        private final boolean date;
+        // null when the format depends on the value
+        private final Format format;
+
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The charset and the delimiter of a CSV input file. The records are parsed byte by byte, so the charset must encode
+ * the quote, the line breaks and the delimiter as single ASCII bytes, like UTF-8, ISO-8859-1 or windows-1252.
+ */
+@Getter
+public class CsvFormat {
+
+    public static final String FILE_EXTENSION = ".csv";
+
+    /**
+     * UTF-8 and comma separated, as exported by QTest.
+     */
+    public static final CsvFormat DEFAULT = new CsvFormat(StandardCharsets.UTF_8, ',');
+
+    private final Charset charset;
+    private final byte delimiter;
+
+    /**
+     * @param charset   The charset of the file.
+     * @param delimiter The character that separates the fields of a record.
+     *
+     * @throws IllegalArgumentException If the delimiter isn't an ASCII character other than the quote and the line
+     *                                  breaks, or the charset doesn't encode it as a single byte.
+     */
+    public CsvFormat(Charset charset, char delimiter) {
+        if (delimiter == 0 || delimiter > 0x7F || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("The CSV delimiter '" + delimiter + "' isn't supported, it must be an ASCII character other than"
+                    + " the quote and the line breaks.");
+        }
+        String syntaxCharacters = "\"\r\n" + delimiter;
+        byte[] encoded = syntaxCharacters.getBytes(charset);
+        byte[] ascii = syntaxCharacters.getBytes(StandardCharsets.US_ASCII);
+        if (!Arrays.equals(encoded, ascii)) {
+            throw new IllegalArgumentException("The CSV charset " + charset.name() + " isn't supported, it must encode the ASCII characters as"
+                    + " single bytes.");
+        }
+        this.charset = charset;
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * @param file An input file.
+     *
+     * @return true if the file is read as CSV, from its .csv extension.
+     */
+    public static boolean isCsvFile(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(FILE_EXTENSION);
+    }
+
+}
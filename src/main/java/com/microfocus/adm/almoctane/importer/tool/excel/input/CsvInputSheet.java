@@ -0,0 +1,177 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A CSV file read as a sheet, each record is a row numbered from 0 for the header record. The file is streamed, only the
+ * position of each record read so far is kept, 8 bytes a row, so a row is read again by seeking to its position. The
+ * rows of a test are usually contiguous and read again in order, without seeking.
+ */
+public class CsvInputSheet implements InputSheet {
+
+    private static final int INITIAL_ROW_CAPACITY = 1024;
+
+    private final CsvReader csvReader;
+    private final ArrayRowView row = new ArrayRowView();
+    private final Map<String, Integer> headerNameToIndex;
+    private final int estimatedLastRowNumber;
+    // the position in the file of each record read so far, by row number
+    private long[] rowPositions = new long[INITIAL_ROW_CAPACITY];
+    private int readRowCount;
+    private boolean allRowsRead;
+
+    /**
+     * @param file              The CSV file, its first record holds the headers.
+     * @param csvFormat         The charset and the delimiter of the file.
+     * @param estimatedRowCount The row count estimated from the size of the file.
+     *
+     * @throws IOException If the header record can't be read.
+     */
+    public CsvInputSheet(File file, CsvFormat csvFormat, int estimatedRowCount) throws IOException {
+        this.csvReader = new CsvReader(file, csvFormat);
+        this.estimatedLastRowNumber = Math.max(estimatedRowCount - 1, 0);
+        try {
+            this.headerNameToIndex = readRow() ? getHeaderNameToIndex(row) : Collections.emptyMap();
+        } catch (IOException | RuntimeException e) {
+            csvReader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderNameToIndex() {
+        return headerNameToIndex;
+    }
+
+    @Override
+    public int getLastRowNumber() {
+        return allRowsRead ? readRowCount - 1 : Math.max(estimatedLastRowNumber, readRowCount - 1);
+    }
+
+    /**
+     * Reads the rows after the header row, in order. The empty records are skipped, like the missing rows of a sheet.
+     *
+     * @param rowHandler The handler called for each non-empty row.
+     *
+     * @throws IOException If the read or the handler fails.
+     */
+    @Override
+    public void forEachRow(StreamingSheetReader.RowHandler rowHandler) throws IOException {
+        if (readRowCount == 0) {
+            return;
+        }
+        seek(1);
+        while (readRow()) {
+            if (!row.isEmpty() && !rowHandler.handleRow(row)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param rowNumber The number of a row, the rows up to it are read first if they weren't yet.
+     *
+     * @return The row with the given number.
+     *
+     * @throws IOException              If the read fails.
+     * @throws IllegalArgumentException If the file has no row with the given number.
+     */
+    @Override
+    public RowView getRow(int rowNumber) throws IOException {
+        if (rowNumber != row.getRowNumber()) {
+            if (rowNumber != csvReader.getNextRowNumber()) {
+                seek(Math.min(rowNumber, readRowCount));
+            }
+            while (row.getRowNumber() != rowNumber) {
+                if (!readRow()) {
+                    throw new IllegalArgumentException("The input file has no row " + rowNumber + ".");
+                }
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        csvReader.close();
+    }
+
+    /**
+     * Moves to a row whose position is known, or to the end of the rows read so far.
+     *
+     * @param rowNumber A row number up to the count of the rows read so far.
+     *
+     * @throws IOException If the channel fails.
+     */
+    private void seek(int rowNumber) throws IOException {
+        // the view no longer holds the row it was filled with once the reader moves back
+        row.clear(-1);
+        if (rowNumber < readRowCount) {
+            csvReader.seek(rowPositions[rowNumber], rowNumber);
+        } else if (readRowCount > 0) {
+            // the end of the last row read is found by reading it again
+            csvReader.seek(rowPositions[readRowCount - 1], readRowCount - 1);
+            csvReader.readRow(row);
+        }
+    }
+
+    /**
+     * Reads the next record, its position is recorded the first time it is read.
+     *
+     * @return false at the end of the file.
+     *
+     * @throws IOException If the read fails.
+     */
+    private boolean readRow() throws IOException {
+        int rowNumber = csvReader.getNextRowNumber();
+        long position = csvReader.getPosition();
+        if (!csvReader.readRow(row)) {
+            allRowsRead = true;
+            return false;
+        }
+        if (rowNumber == readRowCount) {
+            if (readRowCount == rowPositions.length) {
+                rowPositions = Arrays.copyOf(rowPositions, readRowCount * 2);
+            }
+            rowPositions[readRowCount++] = position;
+        }
+        return true;
+    }
+
+    /**
+     * @param headerRow The first record.
+     *
+     * @return A map from the column name to its index, the first column is kept for a repeated name.
+     */
+    private static Map<String, Integer> getHeaderNameToIndex(RowView headerRow) {
+        Map<String, Integer> headerNameToIndex = new HashMap<>();
+        for (int i = 0; i < headerRow.getCellCount(); i++) {
+            String headerName = headerRow.getValue(i);
+            if (headerName != null) {
+                headerNameToIndex.putIfAbsent(headerName, i);
+            }
+        }
+        return Collections.unmodifiableMap(headerNameToIndex);
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a CSV file as in RFC 4180: the fields are separated by the delimiter, a quoted field may hold
+ * the delimiter, line breaks and quotes doubled as "", the records end with CRLF, LF or CR.
+ * The bytes of the file are read through a buffer and the fields are scanned as bytes, only the non-empty values are
+ * decoded to strings, so a row allocates nothing but its values. A record can be read again from its position.
+ * Not thread-safe.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_FIELD_CAPACITY = 256;
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final byte delimiter;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    // the position in the file of the first byte of the buffer
+    private long bufferStart;
+    private int bufferPosition;
+    private int bufferLimit;
+    private byte[] field = new byte[INITIAL_FIELD_CAPACITY];
+    private int fieldLength;
+    // the number of the record read by the next call, the first record is 0
+    @Getter
+    private int nextRowNumber;
+
+    /**
+     * @param file      The CSV file.
+     * @param csvFormat The charset and the delimiter of the file.
+     *
+     * @throws IOException If the file can't be opened.
+     */
+    public CsvReader(File file, CsvFormat csvFormat) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.charset = csvFormat.getCharset();
+        this.delimiter = csvFormat.getDelimiter();
+        try {
+            skipByteOrderMark();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The position in the file of the next record.
+     */
+    public long getPosition() {
+        return bufferStart + bufferPosition;
+    }
+
+    /**
+     * Moves to a record read before, the buffer is kept if it holds the position.
+     *
+     * @param position  The position in the file of the record, from {@link #getPosition()}.
+     * @param rowNumber The number of the record.
+     *
+     * @throws IOException If the channel fails.
+     */
+    public void seek(long position, int rowNumber) throws IOException {
+        if (position >= bufferStart && position <= bufferStart + bufferLimit) {
+            bufferPosition = (int) (position - bufferStart);
+        } else {
+            channel.position(position);
+            bufferStart = position;
+            bufferPosition = 0;
+            bufferLimit = 0;
+        }
+        nextRowNumber = rowNumber;
+    }
+
+    /**
+     * Reads the next record into the given view, the empty fields are left null.
+     *
+     * @param row The view cleared and filled with the fields of the record.
+     *
+     * @return false at the end of the file, the view is then left unchanged.
+     *
+     * @throws IOException If the read fails.
+     */
+    public boolean readRow(ArrayRowView row) throws IOException {
+        if (!fillBuffer()) {
+            return false;
+        }
+        row.clear(nextRowNumber++);
+        int columnIndex = 0;
+        boolean moreFields;
+        do {
+            moreFields = readField();
+            if (fieldLength > 0) {
+                row.setValue(columnIndex, new String(field, 0, fieldLength, charset));
+            }
+            columnIndex++;
+        } while (moreFields);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a field into the field bytes.
+     *
+     * @return true if the field ends with the delimiter, false if it ends the record.
+     *
+     * @throws IOException If the read fails.
+     */
+    private boolean readField() throws IOException {
+        fieldLength = 0;
+        if (!fillBuffer()) {
+            return false;
+        }
+        if (bytes[bufferPosition] == QUOTE) {
+            bufferPosition++;
+            readQuotedValue();
+        }
+        // the unquoted field, or the bytes after the closing quote that are kept as they are like most readers do
+        while (fillBuffer()) {
+            int start = bufferPosition;
+            int end = start;
+            while (end < bufferLimit) {
+                byte value = bytes[end];
+                if (value == delimiter || value == LF || value == CR) {
+                    break;
+                }
+                end++;
+            }
+            appendField(start, end);
+            bufferPosition = end;
+            if (end < bufferLimit) {
+                byte value = bytes[bufferPosition++];
+                if (value == delimiter) {
+                    return true;
+                } else if (value == CR && fillBuffer() && bytes[bufferPosition] == LF) {
+                    bufferPosition++;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a quoted value up to its closing quote, or to the end of the file if it isn't closed.
+     *
+     * @throws IOException If the read fails.
+     */
+    private void readQuotedValue() throws IOException {
+        while (fillBuffer()) {
+            int start = bufferPosition;
+            int end = start;
+            while (end < bufferLimit && bytes[end] != QUOTE) {
+                end++;
+            }
+            appendField(start, end);
+            bufferPosition = end;
+            if (end < bufferLimit) {
+                bufferPosition++;
+                if (!fillBuffer() || bytes[bufferPosition] != QUOTE) {
+                    return;
+                }
+                // an escaped quote
+                appendField(bufferPosition, bufferPosition + 1);
+                bufferPosition++;
+            }
+        }
+    }
+
+    /**
+     * Appends bytes of the buffer to the field.
+     */
+    private void appendField(int start, int end) {
+        int length = end - start;
+        if (fieldLength + length > field.length) {
+            field = Arrays.copyOf(field, Math.max(fieldLength + length, field.length * 2));
+        }
+        System.arraycopy(bytes, start, field, fieldLength, length);
+        fieldLength += length;
+    }
+
+    /**
+     * Reads the next bytes of the file if the buffer was all read.
+     *
+     * @return false at the end of the file.
+     *
+     * @throws IOException If the read fails.
+     */
+    private boolean fillBuffer() throws IOException {
+        if (bufferPosition < bufferLimit) {
+            return true;
+        }
+        bufferStart += bufferLimit;
+        bufferPosition = 0;
+        bufferLimit = 0;
+        byteBuffer.clear();
+        int read;
+        do {
+            read = channel.read(byteBuffer);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        bufferLimit = read;
+        return true;
+    }
+
+    /**
+     * Skips the byte order mark that some tools write at the start of a UTF-8 file.
+     *
+     * @throws IOException If the read fails.
+     */
+    private void skipByteOrderMark() throws IOException {
+        if (!StandardCharsets.UTF_8.equals(charset) || !fillBuffer()) {
+            return;
+        }
+        while (bufferLimit < UTF8_BOM.length) {
+            int read = channel.read(byteBuffer);
+            if (read < 0) {
+                break;
+            }
+            bufferLimit += read;
+        }
+        if (bufferLimit >= UTF8_BOM.length && bytes[0] == UTF8_BOM[0] && bytes[1] == UTF8_BOM[1] && bytes[2] == UTF8_BOM[2]) {
+            bufferPosition = UTF8_BOM.length;
+        }
+    }
+
+}
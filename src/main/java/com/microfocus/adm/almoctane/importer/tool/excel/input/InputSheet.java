@@ -0,0 +1,57 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The sheet a converter reads its rows from, a sheet of a workbook or a CSV file. The first row holds the headers.
+ * The rows are returned through a reused {@link RowView}, valid until the next row is read. Not thread-safe.
+ */
+public interface InputSheet extends Closeable {
+
+    /**
+     * @return A map from the column name to its index.
+     */
+    Map<String, Integer> getHeaderNameToIndex();
+
+    /**
+     * @return The number of the last row, estimated from the size of a file whose rows weren't all read yet.
+     */
+    int getLastRowNumber();
+
+    /**
+     * Reads the rows after the header row, in order.
+     *
+     * @param rowHandler The handler called for each row.
+     *
+     * @throws IOException If the read or the handler fails.
+     */
+    void forEachRow(StreamingSheetReader.RowHandler rowHandler) throws IOException;
+
+    /**
+     * @param rowNumber The number of a row, passed to a handler by {@link #forEachRow}.
+     *
+     * @return The row with the given number.
+     *
+     * @throws IOException                   If the read fails.
+     * @throws UnsupportedOperationException If the rows of the sheet can only be read in order.
+     */
+    RowView getRow(int rowNumber) throws IOException;
+
+}
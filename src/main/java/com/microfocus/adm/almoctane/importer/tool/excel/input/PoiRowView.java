@@ -0,0 +1,64 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * A reusable {@link RowView} over a row of a workbook in memory, the cells are read as Excel displays them by a
+ * {@link CellReader}. Not thread-safe, like the reader.
+ */
+public class PoiRowView implements RowView {
+
+    private final CellReader cellReader;
+    private Row row;
+
+    /**
+     * @param cellReader The reader of the cells of the rows.
+     */
+    public PoiRowView(CellReader cellReader) {
+        this.cellReader = cellReader;
+    }
+
+    /**
+     * @param row The row the view points to.
+     *
+     * @return This view.
+     */
+    public PoiRowView set(Row row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    public int getRowNumber() {
+        return row.getRowNum();
+    }
+
+    @Override
+    public int getCellCount() {
+        // -1 for a row without cells
+        return Math.max(row.getLastCellNum(), 0);
+    }
+
+    @Override
+    public String getValue(int columnIndex) {
+        Cell cell = columnIndex >= 0 ? row.getCell(columnIndex) : null;
+        return cell != null ? cellReader.read(cell) : null;
+    }
+
+}
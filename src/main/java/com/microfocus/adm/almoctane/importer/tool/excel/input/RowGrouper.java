@@ -0,0 +1,554 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Groups the rows of the input sheet by the id of their test, the tests in the order of their first row and the rows of
+ * a test in their order in the sheet, so a test whose rows are interleaved with the rows of other tests is still
+ * converted once with all its steps.
+ * The groups are kept in memory while their estimated heap size fits the heap budget. Beyond it they are sorted
+ * externally: the groups are spilled in runs sorted by id, the runs are merged into the rows of each id and the rows
+ * are sorted again by the first row of their group, through spilled runs of numbers if they don't fit the budget either.
+ * At most {@value #MAXIMUM_MERGED_RUN_COUNT} runs are open at once: when there are more, they are first merged by
+ * consecutive batches into longer runs, so a small budget doesn't run out of file descriptors or read buffers.
+ */
+@Slf4j
+public class RowGrouper implements Closeable {
+
+    // the map entry, the id string and the row array of a group, without the characters of the id
+    private static final long GROUP_HEAP_SIZE = 120;
+    private static final int MIN_ORDER_BUFFER_SIZE = 1024;
+    // each open run takes a file descriptor and a read buffer
+    private static final int MAXIMUM_MERGED_RUN_COUNT = 64;
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+
+    private final long heapBudget;
+    private Map<String, RowNumbers> groups = new LinkedHashMap<>();
+    private long estimatedHeapSize;
+    private String lastId;
+    @Getter
+    private int rowCount;
+    // the number of times a test continues after rows of other tests, only counted while the groups are in memory
+    @Getter
+    private int interleavedGroupCount;
+    // true if the groups didn't fit the heap budget and are sorted through temporary files
+    @Getter
+    private boolean spilled;
+    private final List<File> groupRunFiles = new ArrayList<>();
+    private final List<File> orderRunFiles = new ArrayList<>();
+    private long[] orderBuffer;
+    private int orderBufferSize;
+    private boolean finished;
+
+    /**
+     * @param heapBudget The maximum estimated heap size in bytes of the groups, 0 or less for no limit.
+     */
+    public RowGrouper(long heapBudget) {
+        this.heapBudget = Math.max(heapBudget, 0);
+    }
+
+    /**
+     * @param id        The id of the test of the row, not blank.
+     * @param rowNumber The number of the row in the sheet, greater than the number of the previously added row.
+     *
+     * @throws IOException If spilling the groups fails.
+     */
+    public void add(String id, int rowNumber) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Rows can't be added after the groups were visited.");
+        }
+        RowNumbers group = groups.get(id);
+        if (group == null) {
+            group = new RowNumbers();
+            groups.put(id, group);
+            estimatedHeapSize += GROUP_HEAP_SIZE + 2L * id.length();
+        } else if (!id.equals(lastId)) {
+            interleavedGroupCount++;
+        }
+        estimatedHeapSize += group.add(rowNumber);
+        lastId = id;
+        rowCount++;
+
+        if (heapBudget > 0 && estimatedHeapSize > heapBudget) {
+            spillGroups();
+        }
+    }
+
+    /**
+     * Visits the rows grouped by id, the groups can be visited several times.
+     *
+     * @param visitor The visitor called for each row.
+     *
+     * @throws IOException If reading the spilled groups or the visitor fails.
+     */
+    public void forEachRow(RowVisitor visitor) throws IOException {
+        finish();
+        if (!isSpilled()) {
+            for (RowNumbers group : groups.values()) {
+                for (int i = 0; i < group.size; i++) {
+                    visitor.visit(group.rows[i], i == 0);
+                }
+            }
+        } else if (orderRunFiles.isEmpty()) {
+            for (int i = 0; i < orderBufferSize; i++) {
+                visitOrderedRow(visitor, orderBuffer[i], i == 0 ? -1 : orderBuffer[i - 1]);
+            }
+        } else {
+            mergeOrderRuns(visitor);
+        }
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException If a temporary file can't be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        groups = new LinkedHashMap<>();
+        orderBuffer = null;
+        for (File runFile : groupRunFiles) {
+            Files.deleteIfExists(runFile.toPath());
+        }
+        for (File runFile : orderRunFiles) {
+            Files.deleteIfExists(runFile.toPath());
+        }
+    }
+
+    /**
+     * Writes the groups in memory to a new run file, sorted by id.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void spillGroups() throws IOException {
+        if (!spilled) {
+            spilled = true;
+            log.info("The input rows exceed the grouping heap budget of {} KB, sorting them by id through temporary files.", heapBudget >> 10);
+        }
+        File runFile = createTempFile();
+        groupRunFiles.add(runFile);
+        try (DataOutputStream outputStream = openOutputStream(runFile)) {
+            List<Map.Entry<String, RowNumbers>> entries = new ArrayList<>(groups.entrySet());
+            entries.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<String, RowNumbers> entry : entries) {
+                writeGroup(outputStream, entry.getKey(), entry.getValue().rows, entry.getValue().size);
+            }
+        }
+        groups = new LinkedHashMap<>();
+        estimatedHeapSize = 0;
+    }
+
+    /**
+     * Ends the adding of rows. If the groups were spilled, merges the group runs by id and sorts the rows by the first
+     * row of their group.
+     *
+     * @throws IOException If the merge fails.
+     */
+    private void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (!isSpilled()) {
+            return;
+        }
+
+        spillGroups();
+        int orderBufferCapacity = heapBudget > 0 ? (int) Math.min(Integer.MAX_VALUE - 8, Math.max(MIN_ORDER_BUFFER_SIZE, heapBudget / Long.BYTES))
+                : rowCount;
+        orderBuffer = new long[Math.min(orderBufferCapacity, Math.max(rowCount, 1))];
+        mergeGroupRuns();
+        Arrays.sort(orderBuffer, 0, orderBufferSize);
+        if (!orderRunFiles.isEmpty()) {
+            spillOrderBuffer();
+            orderBuffer = null;
+            reduceRuns(orderRunFiles, (runFiles, outputStream) -> mergeOrderRuns(runFiles, outputStream::writeLong));
+        }
+        for (File runFile : groupRunFiles) {
+            Files.deleteIfExists(runFile.toPath());
+        }
+        groupRunFiles.clear();
+    }
+
+    /**
+     * Merges the group runs, each id is read from the runs in the order they were written, so its rows stay in order.
+     * Each row is added to the order buffer with the first row of its group.
+     *
+     * @throws IOException If reading the runs fails.
+     */
+    private void mergeGroupRuns() throws IOException {
+        // a merged run keeps the records of an id from each of its runs one after the other, in the order of the runs
+        reduceRuns(groupRunFiles, (runFiles, outputStream) ->
+                mergeGroupRuns(runFiles, reader -> writeGroup(outputStream, reader.id, reader.rows, reader.size)));
+
+        String[] currentId = {null};
+        long[] firstRow = {0};
+        mergeGroupRuns(groupRunFiles, reader -> {
+            if (!reader.id.equals(currentId[0])) {
+                currentId[0] = reader.id;
+                firstRow[0] = reader.rows[0];
+            }
+            for (int i = 0; i < reader.size; i++) {
+                addOrderedRow((firstRow[0] << Integer.SIZE) | reader.rows[i]);
+            }
+        });
+    }
+
+    /**
+     * Merges the given group runs by id, the records of an id are handled in the order of the runs.
+     *
+     * @param runFiles     The group runs, at most {@value #MAXIMUM_MERGED_RUN_COUNT}.
+     * @param groupHandler The handler of each record, with the reader positioned on it.
+     *
+     * @throws IOException If reading the runs or the handler fails.
+     */
+    private static void mergeGroupRuns(List<File> runFiles, GroupHandler groupHandler) throws IOException {
+        PriorityQueue<GroupRunReader> readers = new PriorityQueue<>(
+                Comparator.comparing((GroupRunReader reader) -> reader.id).thenComparingInt(reader -> reader.runIndex));
+        try {
+            for (int i = 0; i < runFiles.size(); i++) {
+                GroupRunReader reader = new GroupRunReader(runFiles.get(i), i);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            while (!readers.isEmpty()) {
+                GroupRunReader reader = readers.poll();
+                groupHandler.handle(reader);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (GroupRunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * @param outputStream The stream of a group run.
+     * @param id           The id of the group.
+     * @param rows         The rows of the group.
+     * @param size         The number of rows of the group.
+     *
+     * @throws IOException If the write fails.
+     */
+    private static void writeGroup(DataOutputStream outputStream, String id, int[] rows, int size) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(idBytes.length);
+        outputStream.write(idBytes);
+        outputStream.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            outputStream.writeInt(rows[i]);
+        }
+    }
+
+    private void addOrderedRow(long orderedRow) throws IOException {
+        if (orderBufferSize == orderBuffer.length) {
+            Arrays.sort(orderBuffer);
+            spillOrderBuffer();
+        }
+        orderBuffer[orderBufferSize++] = orderedRow;
+    }
+
+    /**
+     * Writes the sorted order buffer to a new run file.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void spillOrderBuffer() throws IOException {
+        File runFile = createTempFile();
+        orderRunFiles.add(runFile);
+        try (DataOutputStream outputStream = openOutputStream(runFile)) {
+            for (int i = 0; i < orderBufferSize; i++) {
+                outputStream.writeLong(orderBuffer[i]);
+            }
+        }
+        orderBufferSize = 0;
+    }
+
+    /**
+     * Merges the sorted order runs and visits their rows.
+     *
+     * @throws IOException If reading the runs or the visitor fails.
+     */
+    private void mergeOrderRuns(RowVisitor visitor) throws IOException {
+        long[] previous = {-1};
+        mergeOrderRuns(orderRunFiles, value -> {
+            visitOrderedRow(visitor, value, previous[0]);
+            previous[0] = value;
+        });
+    }
+
+    /**
+     * @param runFiles     The sorted order runs, at most {@value #MAXIMUM_MERGED_RUN_COUNT}.
+     * @param orderHandler The handler of each number, in ascending order.
+     *
+     * @throws IOException If reading the runs or the handler fails.
+     */
+    private static void mergeOrderRuns(List<File> runFiles, OrderHandler orderHandler) throws IOException {
+        PriorityQueue<OrderRunReader> readers = new PriorityQueue<>(Comparator.comparingLong((OrderRunReader reader) -> reader.value));
+        try {
+            for (File runFile : runFiles) {
+                OrderRunReader reader = new OrderRunReader(runFile);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            while (!readers.isEmpty()) {
+                OrderRunReader reader = readers.poll();
+                orderHandler.handle(reader.value);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (OrderRunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Merges consecutive batches of runs into new runs until there are at most {@value #MAXIMUM_MERGED_RUN_COUNT},
+     * the merged runs replace their batch in the same place so the order of the runs is kept.
+     *
+     * @param runFiles The runs, updated with the merged runs. The runs of a pass stay in it until they are deleted, so
+     *                 they are deleted on close if the merge fails.
+     * @param runMerge The merge of a batch of runs into a new run.
+     *
+     * @throws IOException If the merge fails.
+     */
+    private static void reduceRuns(List<File> runFiles, RunMerge runMerge) throws IOException {
+        while (runFiles.size() > MAXIMUM_MERGED_RUN_COUNT) {
+            List<File> passRunFiles = new ArrayList<>(runFiles);
+            for (int start = 0; start < passRunFiles.size(); start += MAXIMUM_MERGED_RUN_COUNT) {
+                List<File> batchRunFiles = passRunFiles.subList(start, Math.min(start + MAXIMUM_MERGED_RUN_COUNT, passRunFiles.size()));
+                File mergedRunFile = createTempFile();
+                runFiles.add(mergedRunFile);
+                try (DataOutputStream outputStream = openOutputStream(mergedRunFile)) {
+                    runMerge.merge(batchRunFiles, outputStream);
+                }
+                for (File runFile : batchRunFiles) {
+                    Files.deleteIfExists(runFile.toPath());
+                }
+                runFiles.removeAll(batchRunFiles);
+            }
+        }
+    }
+
+    /**
+     * @param orderedRow The first row of the group in the high half and the row in the low half.
+     * @param previous   The previously visited ordered row, -1 for none.
+     */
+    private static void visitOrderedRow(RowVisitor visitor, long orderedRow, long previous) throws IOException {
+        boolean firstOfGroup = previous < 0 || (previous >>> Integer.SIZE) != (orderedRow >>> Integer.SIZE);
+        visitor.visit((int) orderedRow, firstOfGroup);
+    }
+
+    private static File createTempFile() throws IOException {
+        File file = File.createTempFile("octane-converter-groups-", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static DataOutputStream openOutputStream(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath()), RUN_BUFFER_SIZE));
+    }
+
+    private static DataInputStream openInputStream(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), RUN_BUFFER_SIZE));
+    }
+
+    /**
+     * Visitor of the grouped rows.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+
+        /**
+         * @param rowNumber    The number of the row in the sheet.
+         * @param firstOfGroup true for the first row of a test.
+         *
+         * @throws IOException If the visit fails.
+         */
+        void visit(int rowNumber, boolean firstOfGroup) throws IOException;
+
+    }
+
+    /**
+     * Handler of the records of merged group runs.
+     */
+    @FunctionalInterface
+    private interface GroupHandler {
+
+        void handle(GroupRunReader reader) throws IOException;
+
+    }
+
+    /**
+     * Handler of the numbers of merged order runs.
+     */
+    @FunctionalInterface
+    private interface OrderHandler {
+
+        void handle(long value) throws IOException;
+
+    }
+
+    /**
+     * Merge of a batch of runs into a new run.
+     */
+    @FunctionalInterface
+    private interface RunMerge {
+
+        void merge(List<File> runFiles, DataOutputStream outputStream) throws IOException;
+
+    }
+
+    /**
+     * The growable row numbers of a group.
+     */
+    private static class RowNumbers {
+
+        private int[] rows = new int[4];
+        private int size;
+
+        /**
+         * @return The added heap size in bytes.
+         */
+        private long add(int rowNumber) {
+            long addedHeapSize = 0;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                addedHeapSize = (long) size * Integer.BYTES;
+            }
+            rows[size++] = rowNumber;
+            return addedHeapSize;
+        }
+
+    }
+
+    /**
+     * Reads the groups of a group run file one by one.
+     */
+    private static class GroupRunReader implements Closeable {
+
+        private final DataInputStream inputStream;
+        private final int runIndex;
+        private String id;
+        private int[] rows = new int[16];
+        private int size;
+
+        private GroupRunReader(File runFile, int runIndex) throws IOException {
+            this.inputStream = openInputStream(runFile);
+            this.runIndex = runIndex;
+        }
+
+        /**
+         * @return false at the end of the run.
+         */
+        private boolean next() throws IOException {
+            int idLength;
+            try {
+                idLength = inputStream.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] idBytes = new byte[idLength];
+            inputStream.readFully(idBytes);
+            id = new String(idBytes, StandardCharsets.UTF_8);
+            size = inputStream.readInt();
+            if (rows.length < size) {
+                rows = new int[size];
+            }
+            for (int i = 0; i < size; i++) {
+                rows[i] = inputStream.readInt();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+
+    }
+
+    /**
+     * Reads the numbers of an order run file one by one.
+     */
+    private static class OrderRunReader implements Closeable {
+
+        private final DataInputStream inputStream;
+        private long value;
+
+        private OrderRunReader(File runFile) throws IOException {
+            this.inputStream = openInputStream(runFile);
+        }
+
+        /**
+         * @return false at the end of the run.
+         */
+        private boolean next() throws IOException {
+            try {
+                value = inputStream.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of an input row as text, whatever the input format. The readers reuse one view for all their rows
+ * and point it to the next row, so a view is only valid until the next row is read, {@link #toArray()} copies it.
+ */
+public interface RowView {
+
+    /**
+     * @return The number of the row in the input, starting from 0 with the header row.
+     */
+    int getRowNumber();
+
+    /**
+     * @return The number of cells of the row, the index of its last non-empty cell plus one.
+     */
+    int getCellCount();
+
+    /**
+     * @param columnIndex The index of a column, starting from 0.
+     *
+     * @return The text of the cell, null for a missing cell, null or empty for an empty cell.
+     */
+    String getValue(int columnIndex);
+
+    /**
+     * @return A copy of the values of the row, null for the missing cells, that stays valid after the view moves on.
+     */
+    default String[] toArray() {
+        String[] values = new String[getCellCount()];
+        Arrays.setAll(values, this::getValue);
+        return values;
+    }
+
+}
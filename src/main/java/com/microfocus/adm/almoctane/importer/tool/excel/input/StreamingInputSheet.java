@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A sheet of an Excel file read by a {@link StreamingSheetReader} on each pass over its rows, without building the
+ * workbook in memory. Only the header row is kept between the passes, so the rows can't be read again by number.
+ */
+public class StreamingInputSheet implements InputSheet {
+
+    private final File file;
+    private final int sheetIndex;
+    private final CsvFormat csvFormat;
+    private final Map<String, Integer> headerNameToIndex;
+    private final int estimatedLastRowNumber;
+
+    /**
+     * @param file              The input file, its first non-empty row holds the headers.
+     * @param sheetIndex        The index of the sheet whose rows are read.
+     * @param csvFormat         The charset and the delimiter of a CSV file.
+     * @param estimatedRowCount The row count estimated before the file was opened.
+     *
+     * @throws IOException If the header row can't be read.
+     */
+    public StreamingInputSheet(File file, int sheetIndex, CsvFormat csvFormat, int estimatedRowCount) throws IOException {
+        this.file = file;
+        this.sheetIndex = sheetIndex;
+        this.csvFormat = csvFormat;
+        this.estimatedLastRowNumber = Math.max(estimatedRowCount - 1, 0);
+        Map<String, Integer> headerNameToIndex = new HashMap<>();
+        StreamingSheetReader.read(file, sheetIndex, csvFormat, headerRow -> {
+            for (int i = 0; i < headerRow.getCellCount(); i++) {
+                String headerName = headerRow.getValue(i);
+                if (headerName != null) {
+                    headerNameToIndex.putIfAbsent(headerName, i);
+                }
+            }
+            return false;
+        });
+        this.headerNameToIndex = Collections.unmodifiableMap(headerNameToIndex);
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderNameToIndex() {
+        return headerNameToIndex;
+    }
+
+    @Override
+    public int getLastRowNumber() {
+        return estimatedLastRowNumber;
+    }
+
+    @Override
+    public void forEachRow(StreamingSheetReader.RowHandler rowHandler) throws IOException {
+        boolean[] headerRowRead = {false};
+        StreamingSheetReader.read(file, sheetIndex, csvFormat, row -> {
+            if (!headerRowRead[0]) {
+                headerRowRead[0] = true;
+                return true;
+            }
+            return rowHandler.handleRow(row);
+        });
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, the rows are only streamed.
+     */
+    @Override
+    public RowView getRow(int rowNumber) {
+        throw new UnsupportedOperationException("The rows of a streamed sheet can only be read in order.");
+    }
+
+    @Override
+    public void close() {
+        // the file is only open while its rows are read
+    }
+
+}
@@ -0,0 +1,371 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * Reads the rows of a sheet as text without building the workbook in memory.
+ * The records of a .csv file are read as the rows of its only sheet, and an XML file as a TestLink export whose rows
+ * are read by a {@link TestLinkXmlReader}, after a header row. A .xlsx worksheet is streamed with StAX, only its shared strings are kept in memory. The records of a .xls workbook
+ * are streamed with the HSSF event API and the stream is aborted after the sheet.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class StreamingSheetReader {
+
+    private static final String SHARED_STRING_TYPE = "s";
+    private static final String INLINE_STRING_TYPE = "inlineStr";
+    private static final String NUMBER_TYPE = "n";
+
+    /**
+     * Handler of the rows of a sheet.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+
+        /**
+         * @param row The row, null for the empty cells. The view is reused for the next row, {@link RowView#toArray()}
+         *            copies the row to keep it.
+         *
+         * @return true to read the next row, false to stop reading the sheet.
+         *
+         * @throws IOException If the handling fails.
+         */
+        boolean handleRow(RowView row) throws IOException;
+
+    }
+
+    /**
+     * @param file       The input Excel, CSV or TestLink XML file.
+     * @param sheetIndex The index of the sheet whose rows are read, ignored for a CSV or an XML file.
+     * @param csvFormat  The charset and the delimiter of a CSV file.
+     * @param rowHandler The handler called for each non-empty row, in order.
+     *
+     * @throws IOException If the file isn't an Excel, a CSV or an XML file, it has no sheet at the given index or the read fails.
+     */
+    public static void read(File file, int sheetIndex, CsvFormat csvFormat, RowHandler rowHandler) throws IOException {
+        if (CsvFormat.isCsvFile(file)) {
+            readCsv(file, csvFormat, rowHandler);
+            return;
+        }
+        FileMagic fileMagic = FileMagic.valueOf(file);
+        switch (fileMagic) {
+            case OOXML:
+                readXlsx(file, sheetIndex, rowHandler);
+                break;
+            case OLE2:
+                readXls(file, sheetIndex, rowHandler);
+                break;
+            case XML:
+                TestLinkXmlReader.read(file, true, rowHandler);
+                break;
+            default:
+                throw new IOException("The file '" + file + "' is not an Excel, a CSV or an XML file, its format is " + fileMagic + ".");
+        }
+    }
+
+    /**
+     * @param file       A .csv file.
+     * @param csvFormat  The charset and the delimiter of the file.
+     * @param rowHandler The handler of the rows.
+     *
+     * @throws IOException If the read fails.
+     */
+    private static void readCsv(File file, CsvFormat csvFormat, RowHandler rowHandler) throws IOException {
+        try (CsvReader csvReader = new CsvReader(file, csvFormat)) {
+            ArrayRowView row = new ArrayRowView();
+            while (csvReader.readRow(row)) {
+                if (!row.isEmpty() && !rowHandler.handleRow(row)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file       A .xlsx file.
+     * @param sheetIndex The index of the sheet whose rows are read.
+     * @param rowHandler The handler of the rows.
+     *
+     * @throws IOException If the sheet doesn't exist or the read fails.
+     */
+    private static void readXlsx(File file, int sheetIndex, RowHandler rowHandler) throws IOException {
+        try (OPCPackage opcPackage = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(opcPackage);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            for (int i = 0; i < sheetIndex && sheets.hasNext(); i++) {
+                sheets.next().close();
+            }
+            if (!sheets.hasNext()) {
+                throw new IOException("The input file has no sheet at index " + sheetIndex + ".");
+            }
+
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage, false);
+            try (InputStream sheetInputStream = sheets.next()) {
+                readXlsxRows(sheetInputStream, sharedStrings, rowHandler);
+            }
+        } catch (OpenXML4JException | SAXException | XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @param sheetInputStream The worksheet XML.
+     * @param sharedStrings    The shared strings of the workbook.
+     * @param rowHandler       The handler of the rows.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     * @throws IOException        If the handler fails.
+     */
+    private static void readXlsxRows(InputStream sheetInputStream, ReadOnlySharedStringsTable sharedStrings, RowHandler rowHandler)
+            throws XMLStreamException, IOException {
+        XMLStreamReader xmlReader = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheetInputStream);
+        try {
+            ArrayRowView row = new ArrayRowView();
+            int rowNumber = -1;
+            int columnIndex = -1;
+            String cellType = null;
+            StringBuilder value = new StringBuilder();
+            boolean inValue = false;
+
+            while (xmlReader.hasNext()) {
+                int event = xmlReader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xmlReader.getLocalName();
+                    if ("row".equals(name)) {
+                        String reference = xmlReader.getAttributeValue(null, "r");
+                        rowNumber = reference != null ? Integer.parseInt(reference) - 1 : rowNumber + 1;
+                        row.clear(rowNumber);
+                        columnIndex = -1;
+                    } else if ("c".equals(name)) {
+                        String reference = xmlReader.getAttributeValue(null, "r");
+                        columnIndex = reference != null ? getColumnIndex(reference) : columnIndex + 1;
+                        cellType = xmlReader.getAttributeValue(null, "t");
+                        value.setLength(0);
+                    } else if ("v".equals(name) || ("t".equals(name) && INLINE_STRING_TYPE.equals(cellType))) {
+                        inValue = true;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (inValue) {
+                        value.append(xmlReader.getText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xmlReader.getLocalName();
+                    if ("v".equals(name) || "t".equals(name)) {
+                        inValue = false;
+                    } else if ("c".equals(name)) {
+                        row.setValue(columnIndex, getXlsxCellValue(cellType, value.toString(), sharedStrings));
+                    } else if ("row".equals(name)) {
+                        if (!row.isEmpty() && !rowHandler.handleRow(row)) {
+                            return;
+                        }
+                    } else if ("sheetData".equals(name)) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            xmlReader.close();
+        }
+    }
+
+    /**
+     * @param reference The reference of a cell, like AB12.
+     *
+     * @return The index of the column of the cell, parsed without the regex of {@link org.apache.poi.ss.util.CellReference}.
+     */
+    private static int getColumnIndex(String reference) {
+        int columnNumber = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char character = reference.charAt(i);
+            if (character < 'A' || character > 'Z') {
+                break;
+            }
+            columnNumber = columnNumber * 26 + (character - 'A' + 1);
+        }
+        return columnNumber - 1;
+    }
+
+    /**
+     * @param cellType      The type attribute of the cell.
+     * @param value         The text of the value of the cell.
+     * @param sharedStrings The shared strings of the workbook.
+     *
+     * @return The text of the cell.
+     */
+    private static String getXlsxCellValue(String cellType, String value, ReadOnlySharedStringsTable sharedStrings) {
+        if (SHARED_STRING_TYPE.equals(cellType)) {
+            return sharedStrings.getItemAt(Integer.parseInt(value.trim())).getString();
+        } else if ((cellType == null || NUMBER_TYPE.equals(cellType)) && !value.isEmpty()) {
+            return NumberToTextConverter.toText(Double.parseDouble(value));
+        }
+        return value;
+    }
+
+    /**
+     * @param file       A .xls file.
+     * @param sheetIndex The index of the sheet whose rows are read.
+     * @param rowHandler The handler of the rows.
+     *
+     * @throws IOException If the sheet doesn't exist or the read fails.
+     */
+    private static void readXls(File file, int sheetIndex, RowHandler rowHandler) throws IOException {
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem(file, true)) {
+            XlsRowListener listener = new XlsRowListener(sheetIndex, rowHandler);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(listener);
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fileSystem);
+            if (!listener.sheetFound) {
+                throw new IOException("The input file has no sheet at index " + sheetIndex + ".");
+            }
+        } catch (HSSFUserException e) {
+            throw new IOException(e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Collects the cells of a sheet from the record stream into rows and aborts the stream after the sheet.
+     */
+    private static class XlsRowListener extends AbortableHSSFListener {
+
+        private static final short CONTINUE = 0;
+        private static final short ABORT = 1;
+
+        private final int sheetIndex;
+        private final RowHandler rowHandler;
+        private final ArrayRowView row = new ArrayRowView();
+        private SSTRecord sharedStrings;
+        private int currentSheetIndex = -1;
+        private boolean sheetFound;
+        private int rowNumber = -1;
+        // the cached value of a string formula follows the formula in a string record
+        private int stringFormulaColumn = -1;
+
+        private XlsRowListener(int sheetIndex, RowHandler rowHandler) {
+            this.sheetIndex = sheetIndex;
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) {
+            if (record instanceof BOFRecord && ((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                currentSheetIndex++;
+                sheetFound |= currentSheetIndex == sheetIndex;
+            } else if (record instanceof SSTRecord) {
+                sharedStrings = (SSTRecord) record;
+            } else if (currentSheetIndex == sheetIndex) {
+                if (record instanceof EOFRecord) {
+                    handleRow();
+                    return ABORT;
+                } else if (record instanceof StringRecord && stringFormulaColumn >= 0) {
+                    setValue(stringFormulaColumn, ((StringRecord) record).getString());
+                    stringFormulaColumn = -1;
+                } else if (record instanceof CellValueRecordInterface) {
+                    CellValueRecordInterface cell = (CellValueRecordInterface) record;
+                    if (cell.getRow() != rowNumber) {
+                        if (!handleRow()) {
+                            return ABORT;
+                        }
+                        rowNumber = cell.getRow();
+                        row.clear(rowNumber);
+                    }
+                    setCellValue(record, cell.getColumn());
+                }
+            }
+            return CONTINUE;
+        }
+
+        /**
+         * @param record A cell record.
+         * @param column The column of the cell.
+         */
+        private void setCellValue(Record record, int column) {
+            if (record instanceof LabelSSTRecord && sharedStrings != null) {
+                setValue(column, sharedStrings.getString(((LabelSSTRecord) record).getSSTIndex()).getString());
+            } else if (record instanceof LabelRecord) {
+                setValue(column, ((LabelRecord) record).getValue());
+            } else if (record instanceof NumberRecord) {
+                setValue(column, NumberToTextConverter.toText(((NumberRecord) record).getValue()));
+            } else if (record instanceof FormulaRecord) {
+                FormulaRecord formula = (FormulaRecord) record;
+                if (formula.getCachedResultTypeEnum() == CellType.STRING) {
+                    stringFormulaColumn = column;
+                } else if (formula.getCachedResultTypeEnum() == CellType.NUMERIC) {
+                    setValue(column, NumberToTextConverter.toText(formula.getValue()));
+                }
+            }
+        }
+
+        private void setValue(int column, String value) {
+            row.setValue(column, value);
+        }
+
+        /**
+         * Hands the collected row to the row handler.
+         *
+         * @return false if the handler stops the reading.
+         */
+        private boolean handleRow() {
+            if (row.isEmpty()) {
+                return true;
+            }
+            try {
+                return rowHandler.handleRow(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
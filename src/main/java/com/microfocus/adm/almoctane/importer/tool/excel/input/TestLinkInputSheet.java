@@ -0,0 +1,78 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TestLink XML export read as a sheet by a {@link TestLinkXmlReader}, a row per step. The export is streamed on each
+ * pass over the rows and never kept in memory, so its rows can't be read again by number.
+ */
+public class TestLinkInputSheet implements InputSheet {
+
+    private final File file;
+    private final Map<String, Integer> headerNameToIndex;
+    private final int estimatedLastRowNumber;
+
+    /**
+     * @param file              The TestLink XML export.
+     * @param estimatedRowCount The row count estimated from the size of the file.
+     */
+    public TestLinkInputSheet(File file, int estimatedRowCount) {
+        this.file = file;
+        this.estimatedLastRowNumber = estimatedRowCount;
+        Map<String, Integer> headerNameToIndex = new HashMap<>();
+        List<String> headerNames = TestLinkXmlReader.getHeaderNames();
+        for (int i = 0; i < headerNames.size(); i++) {
+            headerNameToIndex.put(headerNames.get(i), i);
+        }
+        this.headerNameToIndex = Collections.unmodifiableMap(headerNameToIndex);
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderNameToIndex() {
+        return headerNameToIndex;
+    }
+
+    @Override
+    public int getLastRowNumber() {
+        return estimatedLastRowNumber;
+    }
+
+    @Override
+    public void forEachRow(StreamingSheetReader.RowHandler rowHandler) throws IOException {
+        TestLinkXmlReader.read(file, false, rowHandler);
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, the rows are only streamed.
+     */
+    @Override
+    public RowView getRow(int rowNumber) {
+        throw new UnsupportedOperationException("The rows of a TestLink export can only be read in order.");
+    }
+
+    @Override
+    public void close() {
+        // the file is only open while its rows are read
+    }
+
+}
@@ -0,0 +1,436 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.BaseTestLinkField;
+import org.apache.poi.util.XMLHelper;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Reads a TestLink XML export as rows: a row per step with the fields of its test case, or a single row for a test case
+ * without steps, in the columns of {@link BaseTestLinkField}. The export is streamed with StAX, only the fields and the
+ * steps of the current test case are kept, so an export of any size is read with a small heap.
+ * The HTML of the actions and the expected results is converted to text, the other fields are kept as exported.
+ * A row is numbered by the line of its step or test case element, counted from 0, so a rejected value points to its
+ * line in the export. Not thread-safe.
+ */
+public class TestLinkXmlReader {
+
+    private static final String TEST_SUITE = "testsuite";
+    private static final String TEST_CASES = "testcases";
+    private static final String TEST_CASE = "testcase";
+    private static final String STEPS = "steps";
+    private static final String STEP = "step";
+    private static final String KEYWORDS = "keywords";
+    private static final String KEYWORD = "keyword";
+    private static final String NAME_ATTRIBUTE = "name";
+    private static final String INTERNAL_ID_ATTRIBUTE = "internalid";
+    private static final String SUITE_SEPARATOR = " / ";
+    private static final String KEYWORD_SEPARATOR = ",";
+    // the id of a test case exported without its internal id, so its rows are still told from the rows of the next one
+    private static final String GENERATED_ID_PREFIX = "testcase-";
+    private static final int FIELD_COUNT = BaseTestLinkField.values().length;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Map<String, BaseTestLinkField> TEST_CASE_ELEMENTS = getElements(BaseTestLinkField.EXTERNAL_ID,
+            BaseTestLinkField.VERSION, BaseTestLinkField.SUMMARY, BaseTestLinkField.PRECONDITIONS, BaseTestLinkField.EXECUTION_TYPE,
+            BaseTestLinkField.IMPORTANCE, BaseTestLinkField.STATUS, BaseTestLinkField.ESTIMATED_EXEC_DURATION);
+    private static final Map<String, BaseTestLinkField> STEP_ELEMENTS = getElements(BaseTestLinkField.STEP_NUMBER,
+            BaseTestLinkField.ACTIONS, BaseTestLinkField.EXPECTED_RESULTS);
+
+    private static final Pattern HTML_WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern HTML_LINE_BREAK = Pattern.compile("(?i)<br\\s*/?>|</(?:p|div|li|tr|h[1-6])>");
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern LINE_SPACES = Pattern.compile(" *\n *");
+    private static final Pattern HTML_ENTITY = Pattern.compile("&(#[0-9]+|#[xX][0-9a-fA-F]+|[a-zA-Z]+);");
+    private static final Map<String, String> HTML_ENTITIES = getHtmlEntities();
+
+    private final StreamingSheetReader.RowHandler rowHandler;
+    private final ArrayRowView row = new ArrayRowView();
+    private final List<String> suiteNames = new ArrayList<>();
+    private final String[] testCaseValues = new String[FIELD_COUNT];
+    // the steps of the current test case, reused for the next test cases
+    private final List<Step> steps = new ArrayList<>();
+    private int stepCount;
+    private final List<String> keywords = new ArrayList<>();
+    private final StringBuilder text = new StringBuilder();
+    private int testCaseCount;
+
+    private TestLinkXmlReader(StreamingSheetReader.RowHandler rowHandler) {
+        this.rowHandler = rowHandler;
+    }
+
+    /**
+     * @return The names of the columns of the rows, in column order.
+     */
+    public static List<String> getHeaderNames() {
+        return Arrays.stream(BaseTestLinkField.values()).map(BaseTestLinkField::toString).collect(Collectors.toList());
+    }
+
+    /**
+     * @param file       A TestLink XML export of test suites or test cases.
+     * @param headerRow  true to pass a first row holding the names of the columns to the handler.
+     * @param rowHandler The handler called for each row, in order.
+     *
+     * @throws IOException If the file isn't well-formed XML, or the read or the handler fails.
+     */
+    public static void read(File file, boolean headerRow, StreamingSheetReader.RowHandler rowHandler) throws IOException {
+        TestLinkXmlReader reader = new TestLinkXmlReader(rowHandler);
+        if (headerRow) {
+            List<String> headerNames = getHeaderNames();
+            reader.row.clear(0);
+            for (int i = 0; i < headerNames.size(); i++) {
+                reader.row.setValue(i, headerNames.get(i));
+            }
+            if (!rowHandler.handleRow(reader.row)) {
+                return;
+            }
+        }
+
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE)) {
+            XMLStreamReader xmlReader = XMLHelper.newXMLInputFactory().createXMLStreamReader(inputStream);
+            try {
+                reader.readTestCases(xmlReader);
+            } finally {
+                xmlReader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("The TestLink export '" + file + "' can't be read: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the test cases of the document, within any nesting of test suites.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     * @throws IOException        If the handler fails.
+     */
+    private void readTestCases(XMLStreamReader xmlReader) throws XMLStreamException, IOException {
+        while (xmlReader.hasNext()) {
+            int event = xmlReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xmlReader.getLocalName();
+                if (TEST_SUITE.equals(name)) {
+                    String suiteName = xmlReader.getAttributeValue(null, NAME_ATTRIBUTE);
+                    suiteNames.add(suiteName != null ? suiteName : "");
+                } else if (TEST_CASE.equals(name)) {
+                    if (!readTestCase(xmlReader)) {
+                        return;
+                    }
+                } else if (!TEST_CASES.equals(name)) {
+                    // the details of a test suite
+                    skipElement(xmlReader);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && TEST_SUITE.equals(xmlReader.getLocalName())) {
+                suiteNames.remove(suiteNames.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Reads a test case up to its end element and passes its rows to the handler.
+     *
+     * @return false if the handler stopped the reading.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     * @throws IOException        If the handler fails.
+     */
+    private boolean readTestCase(XMLStreamReader xmlReader) throws XMLStreamException, IOException {
+        int lineNumber = xmlReader.getLocation().getLineNumber();
+        testCaseCount++;
+        Arrays.fill(testCaseValues, null);
+        stepCount = 0;
+        keywords.clear();
+
+        testCaseValues[BaseTestLinkField.TEST_SUITE.ordinal()] = suiteNames.stream()
+                .filter(suiteName -> !suiteName.isEmpty())
+                .collect(Collectors.joining(SUITE_SEPARATOR));
+        String internalId = xmlReader.getAttributeValue(null, INTERNAL_ID_ATTRIBUTE);
+        testCaseValues[BaseTestLinkField.INTERNAL_ID.ordinal()] = internalId != null && !internalId.isEmpty()
+                ? internalId : GENERATED_ID_PREFIX + testCaseCount;
+        testCaseValues[BaseTestLinkField.NAME.ordinal()] = xmlReader.getAttributeValue(null, NAME_ATTRIBUTE);
+
+        // each child element is read up to its end, so the next end element is the one of the test case
+        int event;
+        while ((event = xmlReader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = xmlReader.getLocalName();
+            BaseTestLinkField field = TEST_CASE_ELEMENTS.get(name);
+            if (field != null) {
+                testCaseValues[field.ordinal()] = readText(xmlReader);
+            } else if (STEPS.equals(name)) {
+                readSteps(xmlReader);
+            } else if (KEYWORDS.equals(name)) {
+                readKeywords(xmlReader);
+            } else {
+                skipElement(xmlReader);
+            }
+        }
+        testCaseValues[BaseTestLinkField.KEYWORDS.ordinal()] = String.join(KEYWORD_SEPARATOR, keywords);
+
+        if (stepCount == 0) {
+            fillTestCaseRow(lineNumber);
+            return rowHandler.handleRow(row);
+        }
+        for (int i = 0; i < stepCount; i++) {
+            Step step = steps.get(i);
+            fillTestCaseRow(step.lineNumber);
+            setValue(BaseTestLinkField.STEP_NUMBER, step.values[0]);
+            setValue(BaseTestLinkField.ACTIONS, step.values[1]);
+            setValue(BaseTestLinkField.EXPECTED_RESULTS, step.values[2]);
+            if (!rowHandler.handleRow(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the steps of a test case up to the end element of the steps.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+    private void readSteps(XMLStreamReader xmlReader) throws XMLStreamException {
+        int event;
+        while ((event = xmlReader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (STEP.equals(xmlReader.getLocalName())) {
+                readStep(xmlReader);
+            } else {
+                skipElement(xmlReader);
+            }
+        }
+    }
+
+    /**
+     * Reads a step up to its end element.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+    private void readStep(XMLStreamReader xmlReader) throws XMLStreamException {
+        if (stepCount == steps.size()) {
+            steps.add(new Step());
+        }
+        Step step = steps.get(stepCount++);
+        step.lineNumber = xmlReader.getLocation().getLineNumber();
+        Arrays.fill(step.values, null);
+
+        int event;
+        while ((event = xmlReader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            BaseTestLinkField field = STEP_ELEMENTS.get(xmlReader.getLocalName());
+            if (field == BaseTestLinkField.STEP_NUMBER) {
+                step.values[0] = readText(xmlReader);
+            } else if (field == BaseTestLinkField.ACTIONS) {
+                step.values[1] = htmlToText(readText(xmlReader));
+            } else if (field == BaseTestLinkField.EXPECTED_RESULTS) {
+                step.values[2] = htmlToText(readText(xmlReader));
+            } else {
+                skipElement(xmlReader);
+            }
+        }
+    }
+
+    /**
+     * Reads the names of the keywords of a test case up to the end element of the keywords.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+    private void readKeywords(XMLStreamReader xmlReader) throws XMLStreamException {
+        int event;
+        while ((event = xmlReader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String keyword = KEYWORD.equals(xmlReader.getLocalName()) ? xmlReader.getAttributeValue(null, NAME_ATTRIBUTE) : null;
+            if (keyword != null && !keyword.isEmpty()) {
+                keywords.add(keyword);
+            }
+            // the notes of the keyword
+            skipElement(xmlReader);
+        }
+    }
+
+    /**
+     * Reads the text of the current element up to its end element, the text of its child elements is skipped.
+     *
+     * @return The text, null if it is empty.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+    private String readText(XMLStreamReader xmlReader) throws XMLStreamException {
+        text.setLength(0);
+        int depth = 1;
+        while (depth > 0) {
+            switch (xmlReader.next()) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 1) {
+                        text.append(xmlReader.getTextCharacters(), xmlReader.getTextStart(), xmlReader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.length() > 0 ? text.toString() : null;
+    }
+
+    /**
+     * Skips the current element up to its end element.
+     *
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+    private static void skipElement(XMLStreamReader xmlReader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xmlReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Starts a row with the fields of the current test case.
+     *
+     * @param lineNumber The line of the element of the row, from 1.
+     */
+    private void fillTestCaseRow(int lineNumber) {
+        row.clear(Math.max(lineNumber - 1, 0));
+        for (BaseTestLinkField field : BaseTestLinkField.values()) {
+            setValue(field, testCaseValues[field.ordinal()]);
+        }
+    }
+
+    private void setValue(BaseTestLinkField field, String value) {
+        if (value != null && !value.isEmpty()) {
+            row.setValue(field.ordinal(), value);
+        }
+    }
+
+    /**
+     * @param html A value written by the rich text editor of TestLink, or plain text.
+     *
+     * @return The text of the value, a line per paragraph, line break or list item, null for null.
+     */
+    static String htmlToText(String html) {
+        if (html == null || html.indexOf('<') < 0) {
+            return html;
+        }
+        // the line breaks of the HTML source are spaces, the lines come from the tags
+        String value = HTML_WHITESPACE.matcher(html).replaceAll(" ");
+        value = HTML_LINE_BREAK.matcher(value).replaceAll("\n");
+        value = HTML_TAG.matcher(value).replaceAll("");
+        value = LINE_SPACES.matcher(unescapeHtml(value)).replaceAll("\n");
+        return value.trim();
+    }
+
+    /**
+     * @param value A text with HTML character references.
+     *
+     * @return The text with the numeric references and the common named references replaced, the other named
+     * references are kept.
+     */
+    private static String unescapeHtml(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        Matcher matcher = HTML_ENTITY.matcher(value);
+        StringBuffer unescaped = new StringBuffer(value.length());
+        while (matcher.find()) {
+            String entity = matcher.group(1);
+            String replacement;
+            if (entity.charAt(0) == '#') {
+                boolean hexadecimal = entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X');
+                try {
+                    int codePoint = hexadecimal ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+                    replacement = Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : matcher.group();
+                } catch (NumberFormatException e) {
+                    replacement = matcher.group();
+                }
+            } else {
+                replacement = HTML_ENTITIES.getOrDefault(entity, matcher.group());
+            }
+            matcher.appendReplacement(unescaped, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(unescaped);
+        return unescaped.toString();
+    }
+
+    private static Map<String, BaseTestLinkField> getElements(BaseTestLinkField... fields) {
+        Map<String, BaseTestLinkField> elements = new HashMap<>();
+        for (BaseTestLinkField field : fields) {
+            elements.put(field.toString(), field);
+        }
+        return Collections.unmodifiableMap(elements);
+    }
+
+    private static Map<String, String> getHtmlEntities() {
+        Map<String, String> entities = new HashMap<>();
+        entities.put("amp", "&");
+        entities.put("lt", "<");
+        entities.put("gt", ">");
+        entities.put("quot", "\"");
+        entities.put("apos", "'");
+        // a non-breaking space is kept as a plain space in the step text
+        entities.put("nbsp", " ");
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * A step of the current test case, its number, its actions and its expected results.
+     */
+    private static class Step {
+
+        private int lineNumber;
+        private final String[] values = new String[3];
+
+    }
+
+}
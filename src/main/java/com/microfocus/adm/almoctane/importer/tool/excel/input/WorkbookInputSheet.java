@@ -0,0 +1,89 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * A sheet of a workbook in memory, its cells are read as Excel displays them. Closing the sheet closes its workbook.
+ */
+public class WorkbookInputSheet implements InputSheet {
+
+    private final Sheet sheet;
+    private final PoiRowView row = new PoiRowView(new CellReader());
+
+    /**
+     * @param workbook   The input workbook.
+     * @param sheetIndex The index of the sheet whose rows are read.
+     *
+     * @throws IllegalArgumentException If the workbook has no sheet at the given index.
+     */
+    public WorkbookInputSheet(Workbook workbook, int sheetIndex) {
+        this.sheet = workbook.getSheetAt(sheetIndex);
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderNameToIndex() {
+        Iterator<Row> rowIterator = sheet.iterator();
+        if (rowIterator.hasNext()) {
+            Row headerRow = rowIterator.next();
+            return StreamSupport.stream(headerRow.spliterator(), false)
+                    .collect(Collectors.toMap(Cell::getStringCellValue, Cell::getColumnIndex));
+        } else {
+            return Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public int getLastRowNumber() {
+        return sheet.getLastRowNum();
+    }
+
+    @Override
+    public void forEachRow(StreamingSheetReader.RowHandler rowHandler) throws IOException {
+        Iterator<Row> rowIterator = sheet.iterator();
+        if (rowIterator.hasNext()) {
+            rowIterator.next(); // skip header row
+
+            while (rowIterator.hasNext()) {
+                if (!rowHandler.handleRow(row.set(rowIterator.next()))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public RowView getRow(int rowNumber) {
+        return row.set(sheet.getRow(rowNumber));
+    }
+
+    @Override
+    public void close() throws IOException {
+        sheet.getWorkbook().close();
+    }
+
+}
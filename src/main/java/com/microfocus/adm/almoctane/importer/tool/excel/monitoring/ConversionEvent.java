@@ -0,0 +1,48 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+/**
+ * A timed event of the conversion, recorded by Java Flight Recorder when a recording is running.
+ * The event starts when it is created and ends when it is closed.
+ */
+public interface ConversionEvent extends AutoCloseable {
+
+    /**
+     * The event used when Java Flight Recorder isn't available, it records nothing.
+     */
+    ConversionEvent DISABLED = () -> {
+    };
+
+    /**
+     * @param count The number of items handled during the event, like the tests of a batch or the rows written.
+     */
+    default void setCount(long count) {
+    }
+
+    /**
+     * @param detail What the event was about, like the regex that matched a value.
+     */
+    default void setDetail(String detail) {
+    }
+
+    /**
+     * Ends the event and records it if it is enabled in the running recording.
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,114 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Creates the Java Flight Recorder events of the conversion. An event that isn't enabled in a running recording costs
+ * little more than a field check, so the events are always created. On a JVM without the jdk.jfr module (JDK 8 before
+ * update 262) the events record nothing and the event classes are never loaded. The duration of the phases is also
+ * added to {@link Metric#PHASE_SECONDS}, whether Java Flight Recorder is available or not.
+ * <p>
+ * A recording of a conversion: {@code java -XX:StartFlightRecording=filename=conversion.jfr -jar ...}, then
+ * {@code jfr print --categories "Octane Converter" conversion.jfr}.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ConversionEvents {
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    /**
+     * @param phase The phase of the conversion.
+     *
+     * @return A started event for the given phase.
+     */
+    public static ConversionEvent beginPhase(ConversionPhase phase) {
+        return beginPhase(phase, null);
+    }
+
+    /**
+     * @param phase  The phase of the conversion.
+     * @param detail What the phase works on, like the input file or the output column, null if nothing specific.
+     *
+     * @return A started event for the given phase.
+     */
+    public static ConversionEvent beginPhase(ConversionPhase phase, String detail) {
+        return new TimedPhase(phase, JFR_AVAILABLE ? JfrEvents.beginPhase(phase.toString(), detail) : ConversionEvent.DISABLED);
+    }
+
+    /**
+     * @param firstTestNumber The number of the first test of the batch, starting at 1.
+     *
+     * @return A started event for a batch of converted tests, its count is the number of tests of the batch.
+     */
+    public static ConversionEvent beginTestBatch(int firstTestNumber) {
+        return JFR_AVAILABLE ? JfrEvents.beginTestBatch(firstTestNumber) : ConversionEvent.DISABLED;
+    }
+
+    /**
+     * @param fieldName The name of the mapped field.
+     *
+     * @return A started event for a value that no exact or default mapping converted, so it is matched against the
+     * regex mappings of the field, its detail is the matching regex.
+     */
+    public static ConversionEvent beginRegexMapping(String fieldName) {
+        return JFR_AVAILABLE ? JfrEvents.beginRegexMapping(fieldName) : ConversionEvent.DISABLED;
+    }
+
+    /**
+     * A phase event that adds its duration to the phase metric when it is closed.
+     */
+    private static class TimedPhase implements ConversionEvent {
+
+        private final ConversionPhase phase;
+        private final ConversionEvent event;
+        private final long start = System.nanoTime();
+
+        private TimedPhase(ConversionPhase phase, ConversionEvent event) {
+            this.phase = phase;
+            this.event = event;
+        }
+
+        @Override
+        public void setCount(long count) {
+            event.setCount(count);
+        }
+
+        @Override
+        public void setDetail(String detail) {
+            event.setDetail(detail);
+        }
+
+        @Override
+        public void close() {
+            event.close();
+            ConversionMetrics.getInstance().add(Metric.PHASE_SECONDS, System.nanoTime() - start, phase.toString());
+        }
+
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ConversionEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of all the conversions of the process, exported at the end of a run by {@link MetricsWriter}.
+ * The counters are {@link LongAdder}s, which spread the increments of concurrent conversions over several cells
+ * instead of contending on one. A counter looked up once can be incremented without any lookup.
+ * Thread-safe.
+ */
+public class ConversionMetrics {
+
+    private static final ConversionMetrics INSTANCE = new ConversionMetrics();
+
+    // filled once, only the maps of label values change
+    private final Map<Metric, ConcurrentMap<List<String>, LongAdder>> metricToCounters = new EnumMap<>(Metric.class);
+
+    private ConversionMetrics() {
+        for (Metric metric : Metric.values()) {
+            ConcurrentMap<List<String>, LongAdder> counters = new ConcurrentHashMap<>();
+            if (metric.getLabelNames().isEmpty()) {
+                // exported as 0 even if nothing was counted
+                counters.put(Collections.emptyList(), new LongAdder());
+            }
+            metricToCounters.put(metric, counters);
+        }
+    }
+
+    /**
+     * @return The metrics of the process.
+     */
+    public static ConversionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param metric      The metric.
+     * @param labelValues The values of the labels of the metric, in the order of its label names.
+     *
+     * @return The counter of the given metric and label values, created on the first use.
+     */
+    public LongAdder getCounter(Metric metric, String... labelValues) {
+        if (labelValues.length != metric.getLabelNames().size()) {
+            throw new IllegalArgumentException("The metric '" + metric + "' has the labels " + metric.getLabelNames() + ".");
+        }
+        return metricToCounters.get(metric).computeIfAbsent(Collections.unmodifiableList(Arrays.asList(labelValues)),
+                key -> new LongAdder());
+    }
+
+    /**
+     * @param metric      The metric.
+     * @param value       The value added to the counter.
+     * @param labelValues The values of the labels of the metric, in the order of its label names.
+     */
+    public void add(Metric metric, long value, String... labelValues) {
+        getCounter(metric, labelValues).add(value);
+    }
+
+    /**
+     * @param metric The metric.
+     *
+     * @return The counters of the given metric by their label values.
+     */
+    Map<List<String>, LongAdder> getCounters(Metric metric) {
+        return metricToCounters.get(metric);
+    }
+
+}
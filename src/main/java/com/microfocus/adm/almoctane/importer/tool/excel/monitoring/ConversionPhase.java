@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * The phases of a conversion recorded as {@link ConversionEvent}s.
+ */
+@AllArgsConstructor
+public enum ConversionPhase {
+    CONFIGURATION("configuration"),
+    INTEGRITY_CHECK("integrity check"),
+    WORKBOOK_OPEN("workbook open"),
+    INPUT_READING("input reading"),
+    SHARED_STEPS_SEARCH("shared steps search"),
+    CONVERSION("conversion"),
+    WRITE("write"),
+    ROW_FILLING("row filling"),
+    STYLING("styling"),
+    COLUMN_SIZING("column sizing"),
+    SERIALIZATION("serialization");
+
+    private final String typeName;
+
+    @Override
+    public String toString() {
+        return typeName;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The phase a conversion session is in and the rows it has done in it, read by the {@link ProgressReporter}.
+ * Each session has its own progress, so concurrent sessions don't overwrite each other's phase. The converter counts
+ * its rows on the counter of the phase, which is all a row costs, the reporter thread reads the counter when it reports.
+ * Thread-safe.
+ */
+public class ConversionProgress {
+
+    private volatile PhaseProgress phaseProgress;
+
+    /**
+     * @param phase         The phase the conversion starts.
+     * @param totalRowCount The rows the phase is expected to do, 0 or less if they aren't known or not counted.
+     *
+     * @return The counter of the rows done in the phase.
+     */
+    public LongAdder beginPhase(ConversionPhase phase, long totalRowCount) {
+        PhaseProgress started = new PhaseProgress(phase, Math.max(totalRowCount, 0), System.nanoTime(), new LongAdder());
+        phaseProgress = started;
+        return started.getDoneRowCount();
+    }
+
+    /**
+     * @return The progress of the current phase, the last phase started, null before the first phase.
+     */
+    PhaseProgress getPhaseProgress() {
+        return phaseProgress;
+    }
+
+    /**
+     * The rows done in a phase.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class PhaseProgress {
+
+        private final ConversionPhase phase;
+        // 0 if not known
+        private final long totalRowCount;
+        private final long startNanos;
+        private final LongAdder doneRowCount;
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * The Java Flight Recorder events, only loaded by {@link ConversionEvents} when the jdk.jfr module is available.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class JfrEvents {
+
+    private static final String CATEGORY = "Octane Converter";
+
+    static ConversionEvent beginPhase(String phase, String detail) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.detail = detail;
+        event.begin();
+        return event;
+    }
+
+    static ConversionEvent beginTestBatch(int firstTestNumber) {
+        TestBatchEvent event = new TestBatchEvent();
+        event.firstTestNumber = firstTestNumber;
+        event.begin();
+        return event;
+    }
+
+    static ConversionEvent beginRegexMapping(String fieldName) {
+        RegexMappingEvent event = new RegexMappingEvent();
+        event.fieldName = fieldName;
+        event.begin();
+        return event;
+    }
+
+    @Name("com.microfocus.adm.almoctane.importer.tool.excel.Phase")
+    @Label("Conversion Phase")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class PhaseEvent extends Event implements ConversionEvent {
+
+        @Label("Phase")
+        private String phase;
+
+        @Label("Detail")
+        private String detail;
+
+        @Label("Count")
+        @Description("The number of rows or values handled by the phase, 0 if not counted")
+        private long count;
+
+        @Override
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            commit();
+        }
+
+    }
+
+    @Name("com.microfocus.adm.almoctane.importer.tool.excel.TestBatch")
+    @Label("Test Batch")
+    @Description("The conversion of a batch of consecutive tests")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class TestBatchEvent extends Event implements ConversionEvent {
+
+        @Label("First Test Number")
+        private int firstTestNumber;
+
+        @Label("Test Count")
+        private long testCount;
+
+        @Override
+        public void setCount(long count) {
+            this.testCount = count;
+        }
+
+        @Override
+        public void close() {
+            commit();
+        }
+
+    }
+
+    // recorded for every value that falls back to the regex mappings, only the slow ones are kept by default
+    @Name("com.microfocus.adm.almoctane.importer.tool.excel.RegexMapping")
+    @Label("Regex Mapping")
+    @Description("The matching of a value against the regex mappings of its field")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("100 us")
+    static class RegexMappingEvent extends Event implements ConversionEvent {
+
+        @Label("Field")
+        private String fieldName;
+
+        @Label("Regex")
+        @Description("The regex that matched the value, null if none matched")
+        private String regex;
+
+        @Override
+        public void setDetail(String detail) {
+            this.regex = detail;
+        }
+
+        @Override
+        public void close() {
+            commit();
+        }
+
+    }
+
+}
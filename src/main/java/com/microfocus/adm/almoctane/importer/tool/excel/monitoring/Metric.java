@@ -0,0 +1,61 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The counters of {@link ConversionMetrics}, named as Prometheus metrics.
+ */
+@Getter
+public enum Metric {
+    CONVERSIONS("octane_converter_conversions_total", "The conversions by result.", "result"),
+    ROWS_READ("octane_converter_rows_read_total", "The input rows read."),
+    ROWS_WRITTEN("octane_converter_rows_written_total", "The output rows written."),
+    ENTITIES("octane_converter_entities_total", "The output rows by entity type.", "entity_type"),
+    STEPS("octane_converter_steps_total", "The output steps by step type.", "step_type"),
+    MAPPED_VALUES("octane_converter_mapped_values_total", "The values of the fields with value mappings by field and mapping outcome.",
+            "field", "outcome"),
+    REJECTED_VALUES("octane_converter_rejected_values_total", "The input values that could not be converted by column.", "column"),
+    // counted in nanoseconds
+    PHASE_SECONDS("octane_converter_phase_seconds_total", "The time spent in each phase of the conversions.", 9, "phase");
+
+    private final String name;
+    private final String help;
+    // the number of decimal digits of the exported value in the counted value, 9 for seconds counted in nanoseconds
+    private final int scale;
+    private final List<String> labelNames;
+
+    Metric(String name, String help, String... labelNames) {
+        this(name, help, 0, labelNames);
+    }
+
+    Metric(String name, String help, int scale, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.scale = scale;
+        this.labelNames = Collections.unmodifiableList(Arrays.asList(labelNames));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
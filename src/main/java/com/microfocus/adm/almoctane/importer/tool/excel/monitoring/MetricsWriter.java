@@ -0,0 +1,203 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes the {@link ConversionMetrics} at the end of a run, as a Prometheus textfile for the textfile collector of the
+ * node exporter and as a JSON summary. Besides the counters, the files hold the peak heap of the run and its end time.
+ * A file is written next to its path and then moved over it, so a collector never reads a half written file.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MetricsWriter {
+
+    private static final String COUNTER = "counter";
+    private static final String GAUGE = "gauge";
+
+    /**
+     * @param metrics  The metrics of the run.
+     * @param filePath The path of the textfile, it should end with .prom to be read by the node exporter.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeTextfile(ConversionMetrics metrics, String filePath) throws IOException {
+        writeAtomically(Paths.get(filePath), writer -> {
+            for (Family family : getFamilies(metrics)) {
+                writer.write("# HELP " + family.name + " " + family.help + "\n");
+                writer.write("# TYPE " + family.name + " " + family.type + "\n");
+                for (Sample sample : family.samples) {
+                    writer.write(family.name);
+                    if (!sample.labelValues.isEmpty()) {
+                        writer.write('{');
+                        for (int i = 0; i < sample.labelValues.size(); i++) {
+                            writer.write((i > 0 ? "," : "") + family.labelNames.get(i) + "=\"" + escapeLabelValue(sample.labelValues.get(i)) + "\"");
+                        }
+                        writer.write('}');
+                    }
+                    writer.write(" " + sample.value + "\n");
+                }
+            }
+        });
+    }
+
+    /**
+     * @param metrics  The metrics of the run.
+     * @param filePath The path of the JSON file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeJson(ConversionMetrics metrics, String filePath) throws IOException {
+        writeAtomically(Paths.get(filePath), writer -> {
+            try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartObject();
+                for (Family family : getFamilies(metrics)) {
+                    generator.writeArrayFieldStart(family.name);
+                    for (Sample sample : family.samples) {
+                        generator.writeStartObject();
+                        for (int i = 0; i < sample.labelValues.size(); i++) {
+                            generator.writeStringField(family.labelNames.get(i), sample.labelValues.get(i));
+                        }
+                        generator.writeFieldName("value");
+                        generator.writeNumber(sample.value);
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            writer.write('\n');
+        });
+    }
+
+    /**
+     * @param metrics The metrics of the run.
+     *
+     * @return The counters, ordered by metric and label values, followed by the gauges of the run.
+     */
+    private static List<Family> getFamilies(ConversionMetrics metrics) {
+        List<Family> families = new ArrayList<>();
+        for (Metric metric : Metric.values()) {
+            List<Sample> samples = new ArrayList<>();
+            for (Map.Entry<List<String>, LongAdder> counter : metrics.getCounters(metric).entrySet()) {
+                long value = counter.getValue().sum();
+                samples.add(new Sample(counter.getKey(), BigDecimal.valueOf(value, metric.getScale()).toPlainString()));
+            }
+            samples.sort(Comparator.comparing(sample -> String.join("\u0000", sample.labelValues)));
+            families.add(new Family(metric.getName(), metric.getHelp(), COUNTER, metric.getLabelNames(), samples));
+        }
+
+        long heapPeak = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP && memoryPool.getPeakUsage() != null) {
+                heapPeak += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        families.add(new Family("octane_converter_heap_peak_bytes", "The sum of the peak usages of the heap pools during the run.", GAUGE,
+                Collections.emptyList(), Collections.singletonList(new Sample(Collections.emptyList(), Long.toString(heapPeak)))));
+        families.add(new Family("octane_converter_last_run_timestamp_seconds", "The time the run ended, in seconds since the epoch.", GAUGE,
+                Collections.emptyList(), Collections.singletonList(new Sample(Collections.emptyList(),
+                        Long.toString(System.currentTimeMillis() / 1000)))));
+        return families;
+    }
+
+    /**
+     * @param value A label value.
+     *
+     * @return The value with the backslashes, the double quotes and the line feeds escaped.
+     */
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * @param path    The path of the file.
+     * @param content Writes the content of the file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    static void writeAtomically(Path path, WriterContent content) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        Files.createDirectories(absolutePath.getParent());
+        // the node exporter only reads the files that end with .prom, the reader of a status file only the complete file
+        Path temporaryPath = absolutePath.resolveSibling(absolutePath.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+                content.write(writer);
+            }
+            try {
+                Files.move(temporaryPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, absolutePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    @FunctionalInterface
+    interface WriterContent {
+
+        void write(Writer writer) throws IOException;
+
+    }
+
+    @AllArgsConstructor
+    private static class Family {
+
+        private final String name;
+        private final String help;
+        private final String type;
+        private final List<String> labelNames;
+        private final List<Sample> samples;
+
+    }
+
+    @AllArgsConstructor
+    private static class Sample {
+
+        private final List<String> labelValues;
+        // already formatted, an integer for the counts, a decimal for the seconds
+        private final String value;
+
+    }
+
+}
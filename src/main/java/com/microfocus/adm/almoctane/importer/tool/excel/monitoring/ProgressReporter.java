@@ -0,0 +1,221 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.monitoring;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the {@link ConversionProgress} at a fixed interval from a background thread: the current phase, the rows done
+ * out of the expected rows, the rows per second over the last interval, the estimated time left in the phase and the
+ * used heap. The reports are logged and, if a status file is given, written to it as JSON, the file is replaced on each
+ * report and holds the result of the run once it ends.
+ */
+@Slf4j
+public class ProgressReporter {
+
+    private static final String RUNNING = "running";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int BYTES_PER_MB = 1024 * 1024;
+
+    private final ConversionProgress conversionProgress;
+    private final ScheduledExecutorService executor;
+    private final Path statusFilePath;
+    private final long startNanos = System.nanoTime();
+    // the phase and its done rows at the last report, the rate is measured from them
+    private ConversionProgress.PhaseProgress lastPhaseProgress;
+    private long lastDoneRowCount;
+    private long lastNanos;
+    private boolean finished;
+
+    /**
+     * @param conversionProgress The progress of the reported conversion session.
+     * @param intervalSeconds    The number of seconds between two reports, 0 or less for no reports.
+     * @param statusFilePath     The path of the JSON status file, null if the reports are only logged.
+     */
+    private ProgressReporter(ConversionProgress conversionProgress, int intervalSeconds, String statusFilePath) {
+        this.conversionProgress = conversionProgress;
+        this.statusFilePath = statusFilePath != null ? Paths.get(statusFilePath) : null;
+        if (intervalSeconds > 0) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "octane-converter-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleAtFixedRate(() -> report(RUNNING), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @param conversionProgress The progress of the reported conversion session.
+     * @param intervalSeconds    The number of seconds between two reports, 0 or less for no reports.
+     * @param statusFilePath     The path of the JSON status file, null if the reports are only logged.
+     *
+     * @return A reporter of the progress of the conversion, its first report comes after the first interval.
+     */
+    public static ProgressReporter start(ConversionProgress conversionProgress, int intervalSeconds, String statusFilePath) {
+        return new ProgressReporter(conversionProgress, intervalSeconds, statusFilePath);
+    }
+
+    /**
+     * Stops the reports and writes the result of the run to the status file, even if no report ran before.
+     *
+     * @param result The result of the run, success or failure.
+     */
+    public void finish(String result) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (statusFilePath != null) {
+            report(result);
+        }
+    }
+
+    /**
+     * Logs the progress while the conversion runs and writes it to the status file, a report after the end of the run
+     * is ignored.
+     *
+     * @param state Running, or the result of the run.
+     */
+    private synchronized void report(String state) {
+        if (finished) {
+            return;
+        }
+        finished = !RUNNING.equals(state);
+        ConversionProgress.PhaseProgress phaseProgress = conversionProgress.getPhaseProgress();
+        long now = System.nanoTime();
+        long doneRowCount = phaseProgress != null ? phaseProgress.getDoneRowCount().sum() : 0;
+        long totalRowCount = phaseProgress != null ? phaseProgress.getTotalRowCount() : 0;
+        double rowsPerSecond = getRowsPerSecond(phaseProgress, doneRowCount, now);
+        lastPhaseProgress = phaseProgress;
+        lastDoneRowCount = doneRowCount;
+        lastNanos = now;
+
+        // the total is an estimate, once it is exceeded the time left isn't known
+        Integer percent = totalRowCount > 0 ? (int) (Math.min(doneRowCount, totalRowCount) * 100 / totalRowCount) : null;
+        Long secondsLeft = totalRowCount > doneRowCount && rowsPerSecond > 0 ? (long) Math.ceil((totalRowCount - doneRowCount) / rowsPerSecond) : null;
+        long elapsedSeconds = (now - startNanos) / NANOS_PER_SECOND;
+        MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        if (!finished && phaseProgress != null) {
+            log.info(formatReport(phaseProgress, doneRowCount, percent, rowsPerSecond, secondsLeft, elapsedSeconds, heapUsage));
+        }
+        if (statusFilePath != null) {
+            try {
+                MetricsWriter.writeAtomically(statusFilePath, writer -> {
+                    try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+                        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                        generator.useDefaultPrettyPrinter();
+                        generator.writeStartObject();
+                        generator.writeStringField("state", state);
+                        generator.writeStringField("phase", phaseProgress != null ? phaseProgress.getPhase().toString() : null);
+                        generator.writeNumberField("done_rows", doneRowCount);
+                        writeNumberField(generator, "total_rows", totalRowCount > 0 ? totalRowCount : null);
+                        writeNumberField(generator, "percent", percent != null ? percent.longValue() : null);
+                        generator.writeNumberField("rows_per_second", Math.round(rowsPerSecond));
+                        writeNumberField(generator, "seconds_left", secondsLeft);
+                        generator.writeNumberField("elapsed_seconds", elapsedSeconds);
+                        generator.writeNumberField("heap_used_bytes", heapUsage.getUsed());
+                        generator.writeNumberField("heap_max_bytes", heapUsage.getMax());
+                        generator.writeNumberField("timestamp_seconds", System.currentTimeMillis() / 1000);
+                        generator.writeEndObject();
+                    }
+                    writer.write('\n');
+                });
+            } catch (IOException e) {
+                log.warn("The progress could not be written: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param phaseProgress The progress of the current phase, null before the first phase.
+     * @param doneRowCount  The rows done in the current phase.
+     * @param now           The time of the report in nanoseconds.
+     *
+     * @return The rows per second since the last report, or since the start of the phase if it started after it.
+     */
+    private double getRowsPerSecond(ConversionProgress.PhaseProgress phaseProgress, long doneRowCount, long now) {
+        if (phaseProgress == null) {
+            return 0;
+        } else if (phaseProgress == lastPhaseProgress) {
+            return (double) (doneRowCount - lastDoneRowCount) * NANOS_PER_SECOND / Math.max(now - lastNanos, 1);
+        }
+        return (double) doneRowCount * NANOS_PER_SECOND / Math.max(now - phaseProgress.getStartNanos(), 1);
+    }
+
+    /**
+     * @return A report line like: Progress: conversion, 12000 of 30000 rows (40%), 2400 rows/s, about 0:00:08 left, heap 512 of 2048 MB, 0:01:05 elapsed.
+     */
+    private static String formatReport(ConversionProgress.PhaseProgress phaseProgress, long doneRowCount, Integer percent,
+                                       double rowsPerSecond, Long secondsLeft, long elapsedSeconds, MemoryUsage heapUsage) {
+        StringBuilder report = new StringBuilder("Progress: ").append(phaseProgress.getPhase());
+        if (doneRowCount > 0 || phaseProgress.getTotalRowCount() > 0) {
+            report.append(", ").append(doneRowCount);
+            if (percent != null) {
+                report.append(" of ").append(phaseProgress.getTotalRowCount()).append(" rows (").append(percent).append("%)");
+            } else {
+                report.append(" rows");
+            }
+            report.append(", ").append(Math.round(rowsPerSecond)).append(" rows/s");
+            if (secondsLeft != null) {
+                report.append(", about ").append(formatDuration(secondsLeft)).append(" left");
+            }
+        }
+        report.append(", heap ").append(heapUsage.getUsed() / BYTES_PER_MB);
+        if (heapUsage.getMax() > 0) {
+            report.append(" of ").append(heapUsage.getMax() / BYTES_PER_MB);
+        }
+        return report.append(" MB, ").append(formatDuration(elapsedSeconds)).append(" elapsed.").toString();
+    }
+
+    /**
+     * @param seconds A number of seconds.
+     *
+     * @return The duration as hours, minutes and seconds, like 1:02:05.
+     */
+    private static String formatDuration(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * @param generator The JSON generator.
+     * @param name      The name of the field.
+     * @param value     The value of the field, written as null if it isn't known.
+     *
+     * @throws IOException If the field can't be written.
+     */
+    private static void writeNumberField(JsonGenerator generator, String name, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        } else {
+            generator.writeNullField(name);
+        }
+    }
+
+}
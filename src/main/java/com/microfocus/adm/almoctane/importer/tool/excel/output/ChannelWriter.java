@@ -0,0 +1,147 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A writer that encodes its characters into a byte buffer and writes the full buffers to a channel, without the
+ * locking and the intermediate copies of an {@link java.io.OutputStreamWriter}. The channel isn't closed.
+ * Not thread-safe.
+ */
+class ChannelWriter extends Writer {
+
+    private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    private boolean closed;
+
+    /**
+     * @param channel The channel the encoded characters are written to.
+     * @param charset The charset of the characters, the characters it can't encode are replaced.
+     */
+    ChannelWriter(WritableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int character) throws IOException {
+        if (!chars.hasRemaining()) {
+            encodeChars(false);
+        }
+        chars.put((char) character);
+    }
+
+    @Override
+    public void write(char[] characters, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+            int count = Math.min(length, chars.remaining());
+            chars.put(characters, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+            int count = Math.min(length, chars.remaining());
+            chars.put(text, offset, offset + count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Writes the characters written so far to the channel, but a trailing high surrogate waiting for its low surrogate.
+     *
+     * @throws IOException If the channel write fails.
+     */
+    @Override
+    public void flush() throws IOException {
+        encodeChars(false);
+        writeBytes();
+    }
+
+    /**
+     * Writes the remaining characters to the channel, the channel stays open.
+     *
+     * @throws IOException If the channel write fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        encodeChars(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            writeBytes();
+        }
+        writeBytes();
+    }
+
+    /**
+     * Encodes the buffered characters into the byte buffer, writing the byte buffer each time it is full.
+     *
+     * @param endOfInput true if no character follows the buffered ones.
+     *
+     * @throws IOException If the channel write fails.
+     */
+    private void encodeChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        CoderResult result = encoder.encode(chars, bytes, endOfInput);
+        while (result.isOverflow()) {
+            writeBytes();
+            result = encoder.encode(chars, bytes, endOfInput);
+        }
+        // a high surrogate at the end of the buffer stays for the next characters
+        chars.compact();
+    }
+
+    /**
+     * @throws IOException If the channel write fails.
+     */
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+}
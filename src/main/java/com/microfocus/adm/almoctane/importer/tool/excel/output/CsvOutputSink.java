@@ -0,0 +1,60 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes the rows as CSV (RFC 4180): a header line, then a line per row, the values that hold a comma, a quote or a
+ * line break are quoted and the empty cells are empty values.
+ */
+class CsvOutputSink extends TextOutputSink {
+
+    CsvOutputSink(ConversionProgress conversionProgress) {
+        super(OutputFormatType.CSV.getExtension(), conversionProgress);
+    }
+
+    @Override
+    RowWriter start(Writer writer, List<String> headers) throws IOException {
+        for (int i = 0; i < headers.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            RejectsWriter.writeCsvValue(writer, headers.get(i));
+        }
+        writer.write('\n');
+        return row -> {
+            for (int i = 0; i < row.getColumnCount(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = row.getValue(i);
+                if (value instanceof String) {
+                    RejectsWriter.writeCsvValue(writer, (String) value);
+                } else if (value != null) {
+                    writer.write(value.toString());
+                }
+            }
+            writer.write('\n');
+        };
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes the rows as JSON lines: an object per line whose fields are the output headers of the non-empty cells, the
+ * unique ids are numbers and the other values strings.
+ */
+class JsonLinesOutputSink extends TextOutputSink {
+
+    JsonLinesOutputSink(ConversionProgress conversionProgress) {
+        super(OutputFormatType.JSONL.getExtension(), conversionProgress);
+    }
+
+    @Override
+    RowWriter start(Writer writer, List<String> headers) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // the objects are separated by the line breaks written after them
+        generator.setRootValueSeparator(null);
+        return new RowWriter() {
+            @Override
+            public void writeRow(OutputRow row) throws IOException {
+                generator.writeStartObject();
+                for (int i = 0; i < row.getColumnCount(); i++) {
+                    Object value = row.getValue(i);
+                    if (value instanceof Integer) {
+                        generator.writeNumberField(headers.get(i), (Integer) value);
+                    } else if (value != null) {
+                        generator.writeStringField(headers.get(i), value.toString());
+                    }
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            public void finish() throws IOException {
+                generator.close();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column of the rows kept on heap by an {@link OutputRowBuffer}.
+ * Numbers are kept in a primitive array. Text is dictionary-encoded: each distinct value is kept once and the cells hold
+ * its code, one byte per cell while the column has few distinct values, like the entity and step types, four bytes after.
+ * A column that gets both numbers and text is dictionary-encoded too, its numbers are kept in the dictionary as
+ * {@link Integer} values so each cell keeps its type.
+ */
+class OutputColumn {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NULL_CODE = 0;
+    private static final int MAXIMUM_BYTE_CODE = 0xFF;
+
+    // approximate heap size, in bytes, of a dictionary entry without its characters
+    private static final int DICTIONARY_ENTRY_OVERHEAD = 96;
+
+    private int capacity = INITIAL_CAPACITY;
+
+    private boolean numeric;
+    private int[] numbers;
+    private BitSet presentNumbers;
+
+    private final Map<Object, Integer> dictionary = new HashMap<>();
+    private final List<Object> dictionaryValues = new ArrayList<>();
+    private byte[] byteCodes;
+    private int[] intCodes;
+
+    OutputColumn() {
+        this.byteCodes = new byte[capacity];
+    }
+
+    /**
+     * @param position The position of the row among the rows on heap.
+     * @param value    The value of the cell, either a {@link String}, an {@link Integer} or null.
+     *
+     * @return The approximate number of heap bytes added by the value.
+     */
+    long set(int position, Object value) {
+        ensureCapacity(position + 1);
+        if (value == null) {
+            clear(position);
+            return 0;
+        } else if (value instanceof Integer) {
+            return setNumber(position, (Integer) value);
+        } else {
+            return setText(position, value.toString());
+        }
+    }
+
+    /**
+     * @param position The position of the row among the rows on heap.
+     *
+     * @return The value of the cell, either a {@link String}, an {@link Integer} or null for an empty cell.
+     */
+    Object get(int position) {
+        if (numeric) {
+            return presentNumbers.get(position) ? numbers[position] : null;
+        }
+        int code = intCodes != null ? intCodes[position] : byteCodes[position] & MAXIMUM_BYTE_CODE;
+        return code == NULL_CODE ? null : dictionaryValues.get(code - 1);
+    }
+
+    /**
+     * Keeps only the value of the given row, moved to the first position, and drops the dictionary of the other rows.
+     *
+     * @param position The position of the row that is kept.
+     *
+     * @return The approximate heap size in bytes of the column after the reset.
+     */
+    long retainOnly(int position) {
+        Object value = get(position);
+        numeric = false;
+        numbers = null;
+        presentNumbers = null;
+        dictionary.clear();
+        dictionaryValues.clear();
+        intCodes = null;
+        capacity = INITIAL_CAPACITY;
+        byteCodes = new byte[capacity];
+        long addedHeapSize = set(0, value);
+        return (long) getBytesPerCell() * capacity + addedHeapSize;
+    }
+
+    /**
+     * @return The number of heap bytes each cell of the column takes.
+     */
+    int getBytesPerCell() {
+        return numeric || intCodes != null ? Integer.BYTES : Byte.BYTES;
+    }
+
+    private long setNumber(int position, int value) {
+        if (!numeric) {
+            if (!dictionaryValues.isEmpty()) {
+                return setDictionaryValue(position, value);
+            }
+            numeric = true;
+            numbers = new int[capacity];
+            presentNumbers = new BitSet(capacity);
+            byteCodes = null;
+        }
+        numbers[position] = value;
+        presentNumbers.set(position);
+        return 0;
+    }
+
+    private long setText(int position, String value) {
+        long addedHeapSize = numeric ? toDictionary() : 0;
+        return addedHeapSize + setDictionaryValue(position, value);
+    }
+
+    /**
+     * Moves the numbers of the column to the dictionary, once the column gets its first text.
+     *
+     * @return The approximate number of heap bytes added by the move.
+     */
+    private long toDictionary() {
+        int[] movedNumbers = numbers;
+        BitSet movedPresentNumbers = presentNumbers;
+        numeric = false;
+        numbers = null;
+        presentNumbers = null;
+        byteCodes = new byte[capacity];
+
+        long addedHeapSize = (long) (Byte.BYTES - Integer.BYTES) * capacity;
+        for (int position = movedPresentNumbers.nextSetBit(0); position >= 0; position = movedPresentNumbers.nextSetBit(position + 1)) {
+            addedHeapSize += setDictionaryValue(position, movedNumbers[position]);
+        }
+        return addedHeapSize;
+    }
+
+    /**
+     * @param position The position of the row among the rows on heap.
+     * @param value    The text, or the number of a column that also holds text.
+     *
+     * @return The approximate number of heap bytes added by the value.
+     */
+    private long setDictionaryValue(int position, Object value) {
+        long addedHeapSize = 0;
+        Integer code = dictionary.get(value);
+        if (code == null) {
+            dictionaryValues.add(value);
+            code = dictionaryValues.size();
+            dictionary.put(value, code);
+            addedHeapSize += DICTIONARY_ENTRY_OVERHEAD + (value instanceof String ? 2L * ((String) value).length() : 0);
+
+            if (intCodes == null && code > MAXIMUM_BYTE_CODE) {
+                intCodes = new int[capacity];
+                for (int i = 0; i < capacity; i++) {
+                    intCodes[i] = byteCodes[i] & MAXIMUM_BYTE_CODE;
+                }
+                byteCodes = null;
+                addedHeapSize += (long) (Integer.BYTES - Byte.BYTES) * capacity;
+            }
+        }
+
+        if (intCodes != null) {
+            intCodes[position] = code;
+        } else {
+            byteCodes[position] = (byte) (int) code;
+        }
+        return addedHeapSize;
+    }
+
+    private void clear(int position) {
+        if (numeric) {
+            presentNumbers.clear(position);
+        } else if (intCodes != null) {
+            intCodes[position] = NULL_CODE;
+        } else {
+            byteCodes[position] = NULL_CODE;
+        }
+    }
+
+    private void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity <= capacity) {
+            return;
+        }
+        capacity = Math.max(minimumCapacity, capacity + (capacity >> 1));
+        if (numbers != null) {
+            numbers = Arrays.copyOf(numbers, capacity);
+        }
+        if (intCodes != null) {
+            intCodes = Arrays.copyOf(intCodes, capacity);
+        }
+        if (byteCodes != null) {
+            byteCodes = Arrays.copyOf(byteCodes, capacity);
+        }
+    }
+
+}
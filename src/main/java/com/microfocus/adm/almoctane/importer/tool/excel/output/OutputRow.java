@@ -0,0 +1,47 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+/**
+ * A view of a converted row of an {@link OutputRowBuffer}, its values are indexed by the output column index.
+ * A value is either a {@link String}, an {@link Integer} or null for an empty cell.
+ * The view is reused for the next row, it is only valid while the row is visited.
+ */
+public class OutputRow {
+
+    final Object[] values;
+
+    OutputRow(int columnCount) {
+        this.values = new Object[columnCount];
+    }
+
+    /**
+     * @param columnIndex The index of the output column.
+     *
+     * @return The value of the given column, null if the cell is empty.
+     */
+    public Object getValue(int columnIndex) {
+        return values[columnIndex];
+    }
+
+    /**
+     * @return The number of columns of the row.
+     */
+    public int getColumnCount() {
+        return values.length;
+    }
+
+}
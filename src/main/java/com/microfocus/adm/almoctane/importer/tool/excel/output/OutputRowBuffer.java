@@ -0,0 +1,310 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Buffer of the converted rows until the output workbook is written.
+ * The rows on heap are stored by column, see {@link OutputColumn}, and are only turned into cells when the workbook is written.
+ * When their estimated size exceeds the heap budget, all of them except the last one, which may still be filled,
+ * are spilled to a compact row file and read back in order when the workbook is written.
+ */
+@Slf4j
+public class OutputRowBuffer implements Closeable {
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte INTEGER_VALUE = 1;
+    private static final byte STRING_VALUE = 2;
+
+    @Getter
+    private final long heapBudget;
+    private final OutputColumn[] columns;
+    private int heapRowCount;
+    private long estimatedHeapSize;
+
+    @Getter
+    private int rowCount;
+    @Getter
+    private int spilledRowCount;
+    // the text values set and the ones that were new to the dictionary of their column, with their characters
+    @Getter
+    private long textValueCount;
+    @Getter
+    private long textCharacterCount;
+    @Getter
+    private long keptTextValueCount;
+    @Getter
+    private long keptTextCharacterCount;
+    private File spillFile;
+    private DataOutputStream spillOutputStream;
+
+    /**
+     * @param columnCount The number of output columns.
+     * @param heapBudget  The maximum estimated heap size in bytes of the buffered rows, 0 or less for no limit.
+     */
+    public OutputRowBuffer(int columnCount, long heapBudget) {
+        this.heapBudget = Math.max(heapBudget, 0);
+        this.columns = new OutputColumn[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = new OutputColumn();
+        }
+    }
+
+    /**
+     * Adds a new empty row at the end of the buffer.
+     * The rows added before are considered complete and may be spilled to disk.
+     *
+     * @return The number of the new row, starting from 0.
+     *
+     * @throws IOException If spilling the complete rows fails.
+     */
+    public int addRow() throws IOException {
+        if (heapBudget > 0 && estimatedHeapSize > heapBudget) {
+            spill();
+        }
+
+        for (OutputColumn column : columns) {
+            column.set(heapRowCount, null);
+            estimatedHeapSize += column.getBytesPerCell();
+        }
+        heapRowCount++;
+        return rowCount++;
+    }
+
+    /**
+     * @param rowNumber   The number of a row of this buffer that wasn't spilled yet, the last added row.
+     * @param columnIndex The index of the output column.
+     * @param value       The value of the cell, either a {@link String} or an {@link Integer}.
+     */
+    public void setValue(int rowNumber, int columnIndex, Object value) {
+        int position = rowNumber - spilledRowCount;
+        if (position < 0 || position >= heapRowCount) {
+            throw new IllegalStateException("The output row " + rowNumber + " is no longer on heap.");
+        }
+        long addedHeapSize = columns[columnIndex].set(position, value);
+        estimatedHeapSize += addedHeapSize;
+
+        if (value instanceof String) {
+            int length = ((String) value).length();
+            textValueCount++;
+            textCharacterCount += length;
+            if (addedHeapSize > 0) {
+                keptTextValueCount++;
+                keptTextCharacterCount += length;
+            }
+        }
+    }
+
+    /**
+     * @return true if some of the rows were spilled to disk, false if all of them are on heap.
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Visits all the rows in the order they were added, the spilled rows are streamed back from disk.
+     *
+     * @param visitor The visitor called for each row, with a view that is reused for the next row.
+     *
+     * @throws IOException If reading the spilled rows or the visitor fails.
+     */
+    public void forEachRow(RowVisitor visitor) throws IOException {
+        OutputRow row = new OutputRow(columns.length);
+        if (spillOutputStream != null) {
+            spillOutputStream.flush();
+            try (DataInputStream spillInputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile.toPath())))) {
+                for (int i = 0; i < spilledRowCount; i++) {
+                    readRow(spillInputStream, row);
+                    visitor.visit(row);
+                }
+            }
+        }
+        for (int position = 0; position < heapRowCount; position++) {
+            readRow(position, row);
+            visitor.visit(row);
+        }
+    }
+
+    /**
+     * Deletes the spill file.
+     *
+     * @throws IOException If closing the spill file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new OutputColumn();
+        }
+        heapRowCount = 0;
+        if (spillOutputStream != null) {
+            try {
+                spillOutputStream.close();
+            } finally {
+                spillOutputStream = null;
+                Files.deleteIfExists(spillFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Writes all the rows but the last one to the spill file and removes them from the heap.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void spill() throws IOException {
+        if (heapRowCount < 2) {
+            return;
+        }
+        if (spillOutputStream == null) {
+            spillFile = File.createTempFile("octane-converter-rows-", ".bin");
+            spillFile.deleteOnExit();
+            spillOutputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile.toPath()), 1 << 16));
+            log.info("The converted rows exceed the heap budget of {} MB, spilling them to '{}'.", heapBudget >> 20, spillFile);
+        }
+
+        OutputRow row = new OutputRow(columns.length);
+        int lastPosition = heapRowCount - 1;
+        for (int position = 0; position < lastPosition; position++) {
+            readRow(position, row);
+            writeRow(spillOutputStream, row);
+        }
+        spilledRowCount += lastPosition;
+
+        estimatedHeapSize = 0;
+        for (OutputColumn column : columns) {
+            estimatedHeapSize += column.retainOnly(lastPosition);
+        }
+        heapRowCount = 1;
+    }
+
+    /**
+     * @param position The position of a row among the rows on heap.
+     * @param row      The view filled with the values of the row.
+     */
+    private void readRow(int position, OutputRow row) {
+        for (int i = 0; i < columns.length; i++) {
+            row.values[i] = columns[i].get(position);
+        }
+    }
+
+    /**
+     * @param outputStream The spill file stream.
+     * @param row          The row that will be written.
+     *
+     * @throws IOException If the write fails.
+     */
+    private static void writeRow(DataOutputStream outputStream, OutputRow row) throws IOException {
+        for (Object value : row.values) {
+            if (value == null) {
+                outputStream.writeByte(NULL_VALUE);
+            } else if (value instanceof Integer) {
+                outputStream.writeByte(INTEGER_VALUE);
+                outputStream.writeInt((Integer) value);
+            } else {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                outputStream.writeByte(STRING_VALUE);
+                writeVarInt(outputStream, bytes.length);
+                outputStream.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * @param inputStream The spill file stream.
+     * @param row         The view filled with the values of the next row of the spill file.
+     *
+     * @throws IOException If the read fails.
+     */
+    private static void readRow(DataInputStream inputStream, OutputRow row) throws IOException {
+        for (int i = 0; i < row.values.length; i++) {
+            byte valueType = inputStream.readByte();
+            if (valueType == INTEGER_VALUE) {
+                row.values[i] = inputStream.readInt();
+            } else if (valueType == STRING_VALUE) {
+                byte[] bytes = new byte[readVarInt(inputStream)];
+                inputStream.readFully(bytes);
+                row.values[i] = new String(bytes, StandardCharsets.UTF_8);
+            } else {
+                row.values[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Writes a non-negative integer using 7 bits per byte, the string lengths mostly take a single byte.
+     *
+     * @param outputStream The stream the value is written to.
+     * @param value        The non-negative value.
+     *
+     * @throws IOException If the write fails.
+     */
+    private static void writeVarInt(DataOutputStream outputStream, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            outputStream.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.writeByte(value);
+    }
+
+    /**
+     * @param inputStream The stream the value is read from.
+     *
+     * @return The value written by {@link #writeVarInt(DataOutputStream, int)}.
+     *
+     * @throws IOException If the read fails.
+     */
+    private static int readVarInt(DataInputStream inputStream) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int currentByte = inputStream.readUnsignedByte();
+            value |= (currentByte & 0x7F) << shift;
+            if ((currentByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Malformed row file.");
+    }
+
+    /**
+     * Visitor of the buffered rows.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+
+        /**
+         * @param row The visited row, only valid during the visit.
+         *
+         * @throws IOException If the visit fails.
+         */
+        void visit(OutputRow row) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.ConversionPlan;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes the converted rows of an {@link OutputRowBuffer} in an output format.
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+    /**
+     * @param rowBuffer    The converted rows.
+     * @param headers      The output headers, in the order of the columns of the rows.
+     * @param outputStream The stream the output is written to, it isn't closed.
+     *
+     * @throws IOException If any write fails.
+     */
+    void write(OutputRowBuffer rowBuffer, List<String> headers, OutputStream outputStream) throws IOException;
+
+    /**
+     * @param outputFormatType The output format.
+     * @param sheetName        The name of the output sheet, only used by the workbook formats.
+     * @param conversionPlan     The plan that tells how a workbook is written.
+     * @param conversionProgress The progress of the conversion session, the written rows are counted on it.
+     *
+     * @return The sink of the given output format.
+     */
+    static OutputSink create(OutputFormatType outputFormatType, String sheetName, ConversionPlan conversionPlan,
+                             ConversionProgress conversionProgress) {
+        switch (outputFormatType) {
+            case CSV:
+                return new CsvOutputSink(conversionProgress);
+            case JSONL:
+                return new JsonLinesOutputSink(conversionProgress);
+            case XLSX:
+            case XLS:
+            default:
+                return (rowBuffer, headers, outputStream) ->
+                        OutputWorkbookWriter.write(rowBuffer, headers, sheetName, outputFormatType, conversionPlan, conversionProgress,
+                                outputStream);
+        }
+    }
+
+}
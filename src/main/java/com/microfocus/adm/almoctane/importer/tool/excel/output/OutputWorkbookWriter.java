@@ -0,0 +1,309 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.Converter;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+import com.microfocus.adm.almoctane.importer.tool.excel.plan.ConversionPlan;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.WorkbookUtils;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Materializes the rows of an {@link OutputRowBuffer} into an output workbook and writes it.
+ * Rows that fit on heap are written to an in-memory workbook whose columns are auto-sized. When the buffer was spilled,
+ * or when streaming is requested, an {@link OutputFormatType#XLSX} workbook is streamed with a bounded window of rows and the column widths are
+ * estimated from the length of the values, auto-sizing would need all the rows on heap.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class OutputWorkbookWriter {
+
+    private static final int STREAMING_WINDOW_SIZE = 1000;
+    private static final int CHARACTER_WIDTH = 256;
+    private static final int COLUMN_PADDING = 2 * CHARACTER_WIDTH;
+
+    /**
+     * @param rowBuffer          The converted rows.
+     * @param headers            The output headers.
+     * @param sheetName          The name of the output sheet.
+     * @param outputFormatType   The format of the output workbook.
+     * @param conversionPlan     The plan that tells whether a {@link OutputFormatType#XLSX} workbook is streamed even if no
+     *                           row was spilled and how it is compressed.
+     * @param conversionProgress The progress of the conversion session.
+     * @param outputStream       The stream the workbook is written to, it isn't closed.
+     *
+     * @throws IOException If any write fails.
+     */
+    public static void write(OutputRowBuffer rowBuffer, List<String> headers, String sheetName, OutputFormatType outputFormatType,
+                             ConversionPlan conversionPlan, ConversionProgress conversionProgress, OutputStream outputStream)
+            throws IOException {
+        log.info("Output text values: {} set, {} kept on heap ({}x deduplication), {} KB of characters kept instead of {} KB.",
+                rowBuffer.getTextValueCount(), rowBuffer.getKeptTextValueCount(),
+                getRatio(rowBuffer.getTextValueCount(), rowBuffer.getKeptTextValueCount()),
+                rowBuffer.getKeptTextCharacterCount() >> 9, rowBuffer.getTextCharacterCount() >> 9);
+
+        if ((conversionPlan.isStreamingOutput() || rowBuffer.isSpilled()) && outputFormatType == OutputFormatType.XLSX) {
+            writeStreamed(rowBuffer, headers, sheetName, conversionPlan, conversionProgress, outputStream);
+        } else {
+            writeInMemory(rowBuffer, headers, sheetName, outputFormatType, conversionPlan, conversionProgress, outputStream);
+        }
+    }
+
+    /**
+     * Writes all the rows to an in-memory workbook and auto-sizes its columns.
+     * The text cells of an in-memory workbook are always written through the shared strings table.
+     */
+    private static void writeInMemory(OutputRowBuffer rowBuffer, List<String> headers, String sheetName, OutputFormatType outputFormatType,
+                                      ConversionPlan conversionPlan, ConversionProgress conversionProgress, OutputStream outputStream)
+            throws IOException {
+        try (Workbook outputWorkbook = WorkbookUtils.create(outputFormatType)) {
+            Sheet outputSheet = outputWorkbook.createSheet(sheetName);
+            Row headerRow = createHeaderRow(outputSheet, headers);
+            try (ConversionEvent rowFillingEvent = ConversionEvents.beginPhase(ConversionPhase.ROW_FILLING)) {
+                LongAdder filledRowCount = conversionProgress.beginPhase(ConversionPhase.ROW_FILLING, rowBuffer.getRowCount());
+                rowBuffer.forEachRow(row -> {
+                    setRowValues(outputSheet.createRow(outputSheet.getLastRowNum() + 1), row);
+                    filledRowCount.increment();
+                });
+                rowFillingEvent.setCount(rowBuffer.getRowCount());
+            }
+
+            // adding header style and limiting column width to MAXIMUM_COLUMN_WIDTH
+            try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.STYLING)) {
+                conversionProgress.beginPhase(ConversionPhase.STYLING, 0);
+                CellStyle headerStyle = createHeaderStyle(outputWorkbook);
+                for (int columnNumber = headerRow.getFirstCellNum(); columnNumber < headerRow.getLastCellNum(); columnNumber++) {
+                    headerRow.getCell(columnNumber).setCellStyle(headerStyle);
+                }
+            }
+            conversionProgress.beginPhase(ConversionPhase.COLUMN_SIZING, 0);
+            for (int columnNumber = headerRow.getFirstCellNum(); columnNumber < headerRow.getLastCellNum(); columnNumber++) {
+                // auto-sizing measures the text of every cell of the column, it is recorded by column
+                try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.COLUMN_SIZING, headers.get(columnNumber))) {
+                    updateColumnWidth(outputSheet, columnNumber);
+                }
+            }
+
+            try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.SERIALIZATION, outputFormatType.getExtension())) {
+                conversionProgress.beginPhase(ConversionPhase.SERIALIZATION, 0);
+                if (outputFormatType == OutputFormatType.XLSX && conversionPlan.isParallelCompression()) {
+                    // the package of the workbook writes its parts to the given zip stream instead of creating its own
+                    try (ParallelZipOutputStream zipOutputStream = createZipOutputStream(conversionPlan, outputStream)) {
+                        outputWorkbook.write(zipOutputStream);
+                    }
+                } else {
+                    outputWorkbook.write(outputStream);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the rows to a workbook that only keeps a window of rows on heap, the column widths are estimated.
+     * The text cells are written through the shared strings table when it makes the sheet smaller and fits in the
+     * heap budget of the rows, otherwise they are written inline.
+     */
+    private static void writeStreamed(OutputRowBuffer rowBuffer, List<String> headers, String sheetName, ConversionPlan conversionPlan,
+                                      ConversionProgress conversionProgress, OutputStream outputStream) throws IOException {
+        // a first pass over the rows to find the longest value of each column and the size of the shared strings
+        int[] maximumLengths = new int[headers.size()];
+        SharedStringsEstimate sharedStringsEstimate = new SharedStringsEstimate(rowBuffer.getHeapBudget());
+        try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.COLUMN_SIZING, "estimate of all the columns")) {
+            LongAdder measuredRowCount = conversionProgress.beginPhase(ConversionPhase.COLUMN_SIZING, rowBuffer.getRowCount());
+            for (int i = 0; i < headers.size(); i++) {
+                maximumLengths[i] = headers.get(i).length();
+                sharedStringsEstimate.add(headers.get(i));
+            }
+            rowBuffer.forEachRow(row -> {
+                for (int i = 0; i < row.getColumnCount(); i++) {
+                    Object value = row.getValue(i);
+                    if (value != null) {
+                        maximumLengths[i] = Math.max(maximumLengths[i], value.toString().length());
+                    }
+                    if (value instanceof String) {
+                        sharedStringsEstimate.add((String) value);
+                    }
+                }
+                measuredRowCount.increment();
+            });
+        }
+
+        boolean useSharedStrings = sharedStringsEstimate.isSharedStringsSmaller();
+        log.info("Output text cells: {}, {} distinct. Estimated sheet XML {} KB inline, {} with shared strings, so {} are used.",
+                sharedStringsEstimate.getCellCount(), getSizeOrUnknown(sharedStringsEstimate.getDistinctValueCount()),
+                sharedStringsEstimate.getInlineSize() >> 10,
+                sharedStringsEstimate.getSharedSize() < 0 ? "too large for the heap budget" : (sharedStringsEstimate.getSharedSize() >> 10) + " KB",
+                useSharedStrings ? "shared strings" : "inline strings");
+
+        SXSSFWorkbook outputWorkbook = new SXSSFWorkbook(null, STREAMING_WINDOW_SIZE, true, useSharedStrings) {
+            @Override
+            protected ZipArchiveOutputStream createArchiveOutputStream(OutputStream out) {
+                return conversionPlan.isParallelCompression() ? createZipOutputStream(conversionPlan, out) : super.createArchiveOutputStream(out);
+            }
+        };
+        try {
+            Sheet outputSheet = outputWorkbook.createSheet(sheetName);
+            Row headerRow = createHeaderRow(outputSheet, headers);
+
+            try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.STYLING)) {
+                conversionProgress.beginPhase(ConversionPhase.STYLING, 0);
+                CellStyle headerStyle = createHeaderStyle(outputWorkbook);
+                boolean wrapText = false;
+                for (int columnNumber = 0; columnNumber < headers.size(); columnNumber++) {
+                    headerRow.getCell(columnNumber).setCellStyle(headerStyle);
+
+                    int estimatedWidth = maximumLengths[columnNumber] * CHARACTER_WIDTH + COLUMN_PADDING;
+                    if (estimatedWidth > Converter.MAXIMUM_COLUMN_WIDTH) {
+                        wrapText = true;
+                    }
+                    outputSheet.setColumnWidth(columnNumber, Math.min(estimatedWidth, Converter.MAXIMUM_COLUMN_WIDTH));
+                }
+                if (wrapText) {
+                    // same as for the in-memory workbook, where the wrapping is set on the shared style of the cells
+                    outputWorkbook.getCellStyleAt(0).setWrapText(true);
+                    headerStyle.setWrapText(true);
+                }
+            }
+
+            // the rows are flushed to the temporary sheet file while they are filled
+            try (ConversionEvent rowFillingEvent = ConversionEvents.beginPhase(ConversionPhase.ROW_FILLING)) {
+                LongAdder filledRowCount = conversionProgress.beginPhase(ConversionPhase.ROW_FILLING, rowBuffer.getRowCount());
+                rowBuffer.forEachRow(row -> {
+                    setRowValues(outputSheet.createRow(outputSheet.getLastRowNum() + 1), row);
+                    filledRowCount.increment();
+                });
+                rowFillingEvent.setCount(rowBuffer.getRowCount());
+            }
+
+            log.info("Writing {} rows, {} of them spilled to disk, as a streamed workbook.", rowBuffer.getRowCount(), rowBuffer.getSpilledRowCount());
+            try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.SERIALIZATION, OutputFormatType.XLSX.getExtension())) {
+                conversionProgress.beginPhase(ConversionPhase.SERIALIZATION, 0);
+                outputWorkbook.write(outputStream);
+            }
+        } finally {
+            outputWorkbook.dispose();
+            outputWorkbook.close();
+        }
+    }
+
+    /**
+     * @param outputSheet The output sheet.
+     * @param headers     The headers.
+     *
+     * @return The header row created as the first row of the given sheet.
+     */
+    private static Row createHeaderRow(Sheet outputSheet, List<String> headers) {
+        Row headerRow = outputSheet.createRow(0);
+        for (int i = 0; i < headers.size(); i++) {
+            headerRow.createCell(i).setCellValue(headers.get(i));
+        }
+        return headerRow;
+    }
+
+    /**
+     * @param outputWorkbook The output workbook.
+     *
+     * @return A new style for the header cells.
+     */
+    private static CellStyle createHeaderStyle(Workbook outputWorkbook) {
+        CellStyle headerStyle = outputWorkbook.createCellStyle();
+        headerStyle.setFillForegroundColor(IndexedColors.SKY_BLUE.getIndex());
+        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        return headerStyle;
+    }
+
+    /**
+     * @param outputRow The row of the output sheet.
+     * @param row       The buffered row whose values are set.
+     */
+    private static void setRowValues(Row outputRow, OutputRow row) {
+        for (int i = 0; i < row.getColumnCount(); i++) {
+            Object value = row.getValue(i);
+            if (value instanceof Integer) {
+                outputRow.createCell(i).setCellValue((Integer) value);
+            } else if (value != null) {
+                outputRow.createCell(i).setCellValue(value.toString());
+            }
+        }
+    }
+
+    /**
+     * @param sheet        The sheet that the update will be done to.
+     * @param columnNumber The column number that will have its width updated.
+     */
+    private static void updateColumnWidth(Sheet sheet, int columnNumber) {
+        sheet.autoSizeColumn(columnNumber);
+        if (sheet.getColumnWidth(columnNumber) > Converter.MAXIMUM_COLUMN_WIDTH) {
+            for (Row row : sheet) {
+                Cell cell = row.getCell(columnNumber);
+                if (cell != null) {
+                    cell.getCellStyle().setWrapText(true);
+                }
+            }
+            sheet.setColumnWidth(columnNumber, Converter.MAXIMUM_COLUMN_WIDTH);
+        }
+    }
+
+    /**
+     * @param conversionPlan The plan with the compression level and the number of threads.
+     * @param outputStream   The stream the zip is written to.
+     *
+     * @return A zip stream that compresses the parts of the workbook in parallel.
+     */
+    private static ParallelZipOutputStream createZipOutputStream(ConversionPlan conversionPlan, OutputStream outputStream) {
+        return new ParallelZipOutputStream(outputStream, conversionPlan.getCompressionLevel(), conversionPlan.getParallelism());
+    }
+
+    /**
+     * @param count         A number of values.
+     * @param distinctCount The number of distinct values among them.
+     *
+     * @return The deduplication ratio, formatted with one decimal.
+     */
+    private static String getRatio(long count, long distinctCount) {
+        return String.format("%.1f", distinctCount > 0 ? (double) count / distinctCount : 1.0);
+    }
+
+    /**
+     * @param count A count, negative if unknown.
+     *
+     * @return The count or "unknown".
+     */
+    private static String getSizeOrUnknown(long count) {
+        return count < 0 ? "unknown" : Long.toString(count);
+    }
+
+}
@@ -0,0 +1,452 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip stream that compresses the data of its entries in independent blocks on several threads, like pigz.
+ * Each block is deflated with the end of the previous block as its dictionary and ends on a byte boundary,
+ * so the blocks are simply concatenated into a single valid deflate stream per entry. With a single thread the entries
+ * are deflated as one stream each, priming a dictionary for every block only pays off when the blocks run in parallel.
+ * It is handed to POI in place of its own zip stream, both the usermodel and the streaming workbooks accept one.
+ * The target stream is not closed. Zip64 isn't supported, an entry or an archive over 4 GB fails the write.
+ */
+public class ParallelZipOutputStream extends ZipArchiveOutputStream {
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final long MAXIMUM_ZIP_SIZE = 0xFFFFFFFFL;
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_FILE_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int VERSION_NEEDED = 20;
+    // bit 3: sizes and CRC in a data descriptor, bit 11: UTF-8 names
+    private static final int GENERAL_PURPOSE_FLAGS = 1 << 3 | 1 << 11;
+    private static final int DEFLATED = 8;
+
+    private final OutputStream target;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+    private final int maximumPendingBlocks;
+    private final List<EntryRecord> entries = new ArrayList<>();
+    private long offset;
+    private boolean finished;
+
+    private EntryRecord currentEntry;
+    private final CRC32 crc = new CRC32();
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private byte[] dictionary;
+    // used instead of the blocks when there is a single thread
+    private final Deflater serialDeflater;
+    private final byte[] serialBuffer;
+    private final byte[] serialSingleByte;
+
+    /**
+     * @param target           The stream the zip is written to, it isn't closed.
+     * @param compressionLevel The deflate level, from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param threadCount      The number of compressing threads, with 1 the entries are compressed on the writing thread.
+     */
+    public ParallelZipOutputStream(OutputStream target, int compressionLevel, int threadCount) {
+        super(NullOutputStream.NULL_OUTPUT_STREAM);
+        this.target = target;
+        this.compressionLevel = compressionLevel;
+        this.executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount, new DeflateThreadFactory()) : null;
+        this.maximumPendingBlocks = 2 * threadCount;
+        this.serialDeflater = executor == null ? new Deflater(compressionLevel, true) : null;
+        this.serialBuffer = executor == null ? new byte[16 * 1024] : null;
+        this.serialSingleByte = executor == null ? new byte[1] : null;
+    }
+
+    @Override
+    public void setUseZip64(Zip64Mode mode) {
+        // the entry sizes are known only after they are written, zip64 isn't supported
+    }
+
+    @Override
+    public void putArchiveEntry(ArchiveEntry archiveEntry) throws IOException {
+        if (finished) {
+            throw new IOException("The zip stream is already finished.");
+        }
+        if (currentEntry != null) {
+            closeArchiveEntry();
+        }
+
+        // like the zip stream of POI, an entry without a time gets the current time
+        long time = archiveEntry.getLastModifiedDate().getTime();
+        currentEntry = new EntryRecord(archiveEntry.getName().getBytes(StandardCharsets.UTF_8),
+                toDosTime(time != -1 ? time : System.currentTimeMillis()), offset);
+        crc.reset();
+        dictionary = null;
+        blockLength = 0;
+
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        writeShort(VERSION_NEEDED);
+        writeShort(GENERAL_PURPOSE_FLAGS);
+        writeShort(DEFLATED);
+        writeInt(currentEntry.dosTime);
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        writeShort(currentEntry.name.length);
+        writeShort(0);
+        writeBytes(currentEntry.name, 0, currentEntry.name.length);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (currentEntry == null) {
+            throw new IOException("No zip entry was started.");
+        }
+        crc.update(bytes, offset, length);
+        currentEntry.uncompressedSize += length;
+        if (serialDeflater != null) {
+            serialDeflater.setInput(bytes, offset, length);
+            while (!serialDeflater.needsInput()) {
+                writeCompressed(serialBuffer, serialDeflater.deflate(serialBuffer));
+            }
+            return;
+        }
+        while (length > 0) {
+            int copied = Math.min(length, BLOCK_SIZE - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, copied);
+            blockLength += copied;
+            offset += copied;
+            length -= copied;
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        if (serialDeflater != null) {
+            // the deflater consumes its input before the write returns, the array is reused
+            serialSingleByte[0] = (byte) value;
+            write(serialSingleByte, 0, 1);
+            return;
+        }
+        if (currentEntry == null) {
+            throw new IOException("No zip entry was started.");
+        }
+        crc.update(value);
+        currentEntry.uncompressedSize++;
+        block[blockLength++] = (byte) value;
+        if (blockLength == BLOCK_SIZE) {
+            submitBlock(false);
+        }
+    }
+
+    @Override
+    public void closeArchiveEntry() throws IOException {
+        if (currentEntry == null) {
+            return;
+        }
+        if (serialDeflater != null) {
+            serialDeflater.finish();
+            while (!serialDeflater.finished()) {
+                writeCompressed(serialBuffer, serialDeflater.deflate(serialBuffer));
+            }
+            serialDeflater.reset();
+        } else {
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeNextBlock();
+            }
+        }
+
+        currentEntry.crc = crc.getValue();
+        if (currentEntry.uncompressedSize > MAXIMUM_ZIP_SIZE || currentEntry.compressedSize > MAXIMUM_ZIP_SIZE) {
+            throw new IOException("The zip entry '" + new String(currentEntry.name, StandardCharsets.UTF_8) + "' is over 4 GB.");
+        }
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt((int) currentEntry.crc);
+        writeInt((int) currentEntry.compressedSize);
+        writeInt((int) currentEntry.uncompressedSize);
+
+        entries.add(currentEntry);
+        currentEntry = null;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            closeArchiveEntry();
+
+            long centralDirectoryOffset = offset;
+            for (EntryRecord entry : entries) {
+                writeInt(CENTRAL_FILE_HEADER_SIGNATURE);
+                writeShort(VERSION_NEEDED);
+                writeShort(VERSION_NEEDED);
+                writeShort(GENERAL_PURPOSE_FLAGS);
+                writeShort(DEFLATED);
+                writeInt(entry.dosTime);
+                writeInt((int) entry.crc);
+                writeInt((int) entry.compressedSize);
+                writeInt((int) entry.uncompressedSize);
+                writeShort(entry.name.length);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeInt(0);
+                writeInt((int) entry.localHeaderOffset);
+                writeBytes(entry.name, 0, entry.name.length);
+            }
+            long centralDirectorySize = offset - centralDirectoryOffset;
+            if (offset > MAXIMUM_ZIP_SIZE || entries.size() > 0xFFFF) {
+                throw new IOException("The zip archive is over 4 GB or has too many entries.");
+            }
+
+            writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            writeShort(0);
+            writeShort(0);
+            writeShort(entries.size());
+            writeShort(entries.size());
+            writeInt((int) centralDirectorySize);
+            writeInt((int) centralDirectoryOffset);
+            writeShort(0);
+            target.flush();
+        } finally {
+            finished = true;
+            shutdownExecutor();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target.flush();
+    }
+
+    /**
+     * Finishes the zip, the target stream is not closed.
+     *
+     * @throws IOException If finishing the zip fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            shutdownExecutor();
+        }
+    }
+
+    /**
+     * Compresses the filled part of the current block on the executor.
+     *
+     * @param last true for the last block of the entry, which ends the deflate stream.
+     *
+     * @throws IOException If writing the blocks already compressed fails.
+     */
+    private void submitBlock(boolean last) throws IOException {
+        byte[] input = block;
+        int inputLength = blockLength;
+        byte[] blockDictionary = dictionary;
+        Callable<byte[]> compression = () -> deflate(input, inputLength, blockDictionary, last, compressionLevel);
+
+        pendingBlocks.add(executor.submit(compression));
+
+        if (!last) {
+            dictionary = Arrays.copyOfRange(input, inputLength - DICTIONARY_SIZE, inputLength);
+            block = new byte[BLOCK_SIZE];
+            blockLength = 0;
+        }
+        while (pendingBlocks.size() >= maximumPendingBlocks) {
+            writeNextBlock();
+        }
+    }
+
+    /**
+     * Waits for the oldest pending block and writes it.
+     *
+     * @throws IOException If the compression or the write fails.
+     */
+    private void writeNextBlock() throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pendingBlocks.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The compression of the output was interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException("The compression of the output failed.", e.getCause());
+        }
+        writeCompressed(compressed, compressed.length);
+    }
+
+    /**
+     * @param compressed The compressed data of the current entry.
+     * @param length     The length of the data.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void writeCompressed(byte[] compressed, int length) throws IOException {
+        currentEntry.compressedSize += length;
+        writeBytes(compressed, 0, length);
+    }
+
+    /**
+     * @param input       The uncompressed block.
+     * @param inputLength The length of the block.
+     * @param dictionary  The end of the previous block of the entry, null for the first block.
+     * @param last        true to end the deflate stream after the block, otherwise it is flushed to a byte boundary.
+     * @param level       The deflate level.
+     *
+     * @return The raw deflated block.
+     */
+    private static byte[] deflate(byte[] input, int inputLength, byte[] dictionary, boolean last, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, inputLength);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(inputLength / 4 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Stops the compressing threads and frees the native memory of the deflaters, including the deflater that the
+     * super class creates and this stream never uses. Ending a deflater twice does nothing.
+     */
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+        } else {
+            serialDeflater.end();
+        }
+        def.end();
+    }
+
+    private void writeShort(int value) throws IOException {
+        target.write(value);
+        target.write(value >>> 8);
+        offset += 2;
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & 0xFFFF);
+        writeShort(value >>> 16);
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        target.write(bytes, offset, length);
+        this.offset += length;
+    }
+
+    /**
+     * @param time A time in milliseconds.
+     *
+     * @return The time in the MS-DOS format of the zip headers.
+     */
+    private static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * The central directory record of a written entry.
+     */
+    private static class EntryRecord {
+
+        private final byte[] name;
+        private final int dosTime;
+        private final long localHeaderOffset;
+        private long crc;
+        private long compressedSize;
+        private long uncompressedSize;
+
+        private EntryRecord(byte[] name, int dosTime, long localHeaderOffset) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+    }
+
+    /**
+     * Creates the daemon threads of the compression.
+     */
+    private static class DeflateThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "octane-converter-deflate-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
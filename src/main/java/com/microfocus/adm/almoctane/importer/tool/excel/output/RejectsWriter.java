@@ -0,0 +1,256 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionMetrics;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.Metric;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.RejectsFormatType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Collects the input values that could not be converted. Each rejected value is written as a line of the rejects file
+ * by a background thread, so a bad input doesn't slow the conversion down with one log line per value, only the
+ * number of rejected values by column is logged when the writer is closed.
+ * Not thread-safe, the values are rejected by the converting thread.
+ */
+@Slf4j
+public class RejectsWriter implements Closeable {
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Reject END = new Reject(0, null, null, null);
+
+    // null if the rejected values are only counted
+    private final String filePath;
+    private final BlockingQueue<Reject> queue;
+    private final Thread writerThread;
+    private final Map<String, Integer> columnNameToRejectCount = new LinkedHashMap<>();
+    private int rejectCount;
+    private volatile IOException failure;
+
+    /**
+     * @param filePath The path of the rejects file, a .csv or a .jsonl file, null to only count the rejected values.
+     *
+     * @throws IOException If the rejects file can't be created.
+     */
+    public RejectsWriter(String filePath) throws IOException {
+        this.filePath = filePath;
+        if (filePath != null) {
+            RejectsFormatType formatType = RejectsFormatType.fromFilePath(filePath);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(new File(filePath)),
+                    StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            this.writerThread = new Thread(() -> writeRejects(writer, formatType), "octane-converter-rejects");
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+        } else {
+            this.queue = null;
+            this.writerThread = null;
+        }
+    }
+
+    /**
+     * @param inputRowNumber The number of the input row as shown by Excel, starting at 1, or 0 if the value doesn't
+     *                       come from a single input row.
+     * @param columnName     The name of the input column of the value.
+     * @param value          The rejected value.
+     * @param reason         Why the value was rejected.
+     */
+    public void reject(int inputRowNumber, String columnName, String value, String reason) {
+        rejectCount++;
+        columnNameToRejectCount.merge(columnName, 1, Integer::sum);
+        if (queue != null && failure == null) {
+            try {
+                queue.put(new Reject(inputRowNumber, columnName, value, reason));
+            } catch (InterruptedException e) {
+                // the conversion checks the interrupt and is cancelled
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes the queued rejected values until the end marker, a failed write discards the next values so the
+     * converting thread is never blocked.
+     *
+     * @param writer     The writer of the rejects file, closed at the end.
+     * @param formatType The format of the rejects file.
+     */
+    private void writeRejects(Writer writer, RejectsFormatType formatType) {
+        try (Writer ignored = writer; JsonGenerator generator = formatType == RejectsFormatType.JSONL ? createJsonGenerator(writer) : null) {
+            if (formatType == RejectsFormatType.CSV) {
+                writer.write("row,column,value,reason\n");
+            }
+            Reject reject;
+            while ((reject = queue.take()) != END) {
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    if (generator != null) {
+                        writeJsonLine(generator, reject);
+                    } else {
+                        writeCsvLine(writer, reject);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param writer The writer of the rejects file.
+     *
+     * @return A generator that writes one object by line and leaves the writer open.
+     *
+     * @throws IOException If the generator can't be created.
+     */
+    private static JsonGenerator createJsonGenerator(Writer writer) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // the lines are separated explicitly, so the last line ends with a new line as well
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private static void writeJsonLine(JsonGenerator generator, Reject reject) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("row", reject.getInputRowNumber());
+        generator.writeStringField("column", reject.getColumnName());
+        generator.writeStringField("value", reject.getValue());
+        generator.writeStringField("reason", reject.getReason());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeCsvLine(Writer writer, Reject reject) throws IOException {
+        writer.write(Integer.toString(reject.getInputRowNumber()));
+        writer.write(',');
+        writeCsvValue(writer, reject.getColumnName());
+        writer.write(',');
+        writeCsvValue(writer, reject.getValue());
+        writer.write(',');
+        writeCsvValue(writer, reject.getReason());
+        writer.write('\n');
+    }
+
+    /**
+     * Writes a CSV value, quoted if it contains a separator, a quote or a line break (RFC 4180).
+     *
+     * @param writer The writer of the CSV file.
+     * @param value  The value, null is written as an empty value.
+     *
+     * @throws IOException If the write fails.
+     */
+    static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char character = value.charAt(i);
+            quoted = character == ',' || character == '"' || character == '\n' || character == '\r';
+        }
+        if (quoted) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    /**
+     * Waits for the queued values to be written, closes the rejects file, logs the number of rejected values and adds
+     * them to the metrics.
+     *
+     * @throws IOException If writing the rejects file failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writerThread != null && writerThread.isAlive()) {
+            // the queued values are written even if the conversion was cancelled
+            boolean interrupted = false;
+            boolean endQueued = false;
+            while (writerThread.isAlive()) {
+                try {
+                    if (!endQueued) {
+                        queue.put(END);
+                        endQueued = true;
+                    }
+                    writerThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        columnNameToRejectCount.forEach((columnName, count) ->
+                ConversionMetrics.getInstance().add(Metric.REJECTED_VALUES, count, columnName));
+        if (rejectCount > 0) {
+            if (filePath != null) {
+                log.warn("{} input values were rejected, by column: {}. They are listed in '{}'.", rejectCount, columnNameToRejectCount, filePath);
+            } else {
+                log.warn("{} input values were rejected, by column: {}. Set rejects.file.path to list them.", rejectCount, columnNameToRejectCount);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * An input value that could not be converted.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class Reject {
+
+        private final int inputRowNumber;
+        private final String columnName;
+        private final String value;
+        private final String reason;
+
+    }
+
+}
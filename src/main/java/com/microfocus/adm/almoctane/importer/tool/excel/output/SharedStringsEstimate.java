@@ -0,0 +1,98 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import lombok.Getter;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Estimates the size of the sheet XML with the text cells written inline and with them written through the shared
+ * strings table, where each distinct value is written once and the cells refer to its index.
+ * The distinct values are only tracked up to a heap limit, past it the shared strings table is considered too large.
+ */
+class SharedStringsEstimate {
+
+    // <c r="A1" t="inlineStr"><is><t>value</t></is></c> compared to <c r="A1" t="s"><v>index</v></c>
+    private static final int INLINE_CELL_OVERHEAD = 24;
+    private static final int SHARED_CELL_OVERHEAD = 8;
+    // <si><t>value</t></si>
+    private static final int SHARED_STRING_OVERHEAD = 16;
+    // approximate heap size, in bytes, of a tracked distinct value without its characters
+    private static final int DISTINCT_VALUE_HEAP_SIZE = 96;
+
+    private final long heapLimit;
+    private final Set<String> distinctValues = new HashSet<>();
+    private long distinctValuesHeapSize;
+    private boolean overHeapLimit;
+
+    @Getter
+    private long cellCount;
+    @Getter
+    private long inlineSize;
+    private long sharedCellsSize;
+    private long sharedStringsSize;
+
+    /**
+     * @param heapLimit The heap in bytes the distinct values may take while they are tracked, 0 or less for no limit.
+     */
+    SharedStringsEstimate(long heapLimit) {
+        this.heapLimit = heapLimit > 0 ? heapLimit : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param value The value of a text cell.
+     */
+    void add(String value) {
+        cellCount++;
+        inlineSize += value.length() + INLINE_CELL_OVERHEAD;
+        if (overHeapLimit) {
+            return;
+        }
+        if (distinctValues.add(value)) {
+            sharedStringsSize += value.length() + SHARED_STRING_OVERHEAD;
+            distinctValuesHeapSize += DISTINCT_VALUE_HEAP_SIZE + 2L * value.length();
+            if (distinctValuesHeapSize > heapLimit) {
+                overHeapLimit = true;
+                distinctValues.clear();
+            }
+        }
+        sharedCellsSize += Integer.toString(distinctValues.size()).length() + SHARED_CELL_OVERHEAD;
+    }
+
+    /**
+     * @return true if the shared strings table makes the sheet smaller and its values fit in the heap limit.
+     */
+    boolean isSharedStringsSmaller() {
+        return !overHeapLimit && getSharedSize() < inlineSize;
+    }
+
+    /**
+     * @return The number of distinct values, -1 if they weren't all tracked.
+     */
+    long getDistinctValueCount() {
+        return overHeapLimit ? -1 : distinctValues.size();
+    }
+
+    /**
+     * @return The size with the shared strings table, -1 if the distinct values weren't all tracked.
+     */
+    long getSharedSize() {
+        return overHeapLimit ? -1 : sharedCellsSize + sharedStringsSize;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionProgress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes the rows as UTF-8 text in a single pass, straight from the row buffer to the channel of the output stream,
+ * without any POI object, styling or column sizing. A file stream is written through its file channel.
+ */
+abstract class TextOutputSink implements OutputSink {
+
+    private final String extension;
+    private final ConversionProgress conversionProgress;
+
+    /**
+     * @param extension          The extension of the format, for the phase event.
+     * @param conversionProgress The progress of the conversion session.
+     */
+    TextOutputSink(String extension, ConversionProgress conversionProgress) {
+        this.extension = extension;
+        this.conversionProgress = conversionProgress;
+    }
+
+    @Override
+    public void write(OutputRowBuffer rowBuffer, List<String> headers, OutputStream outputStream) throws IOException {
+        try (ConversionEvent serializationEvent = ConversionEvents.beginPhase(ConversionPhase.SERIALIZATION, extension);
+             Writer writer = new ChannelWriter(Channels.newChannel(outputStream), StandardCharsets.UTF_8)) {
+            LongAdder writtenRowCount = conversionProgress.beginPhase(ConversionPhase.SERIALIZATION, rowBuffer.getRowCount());
+            RowWriter rowWriter = start(writer, headers);
+            rowBuffer.forEachRow(row -> {
+                rowWriter.writeRow(row);
+                writtenRowCount.increment();
+            });
+            rowWriter.finish();
+            serializationEvent.setCount(rowBuffer.getRowCount());
+        }
+    }
+
+    /**
+     * @param writer  The writer of the output.
+     * @param headers The output headers.
+     *
+     * @return The writer of the rows, the header of the format is already written.
+     *
+     * @throws IOException If the write fails.
+     */
+    abstract RowWriter start(Writer writer, List<String> headers) throws IOException;
+
+    /**
+     * Writes the rows of one output.
+     */
+    interface RowWriter {
+
+        /**
+         * @param row A converted row.
+         *
+         * @throws IOException If the write fails.
+         */
+        void writeRow(OutputRow row) throws IOException;
+
+        /**
+         * Writes what follows the last row, the writer is flushed by the sink.
+         *
+         * @throws IOException If the write fails.
+         */
+        default void finish() throws IOException {
+        }
+
+    }
+
+}
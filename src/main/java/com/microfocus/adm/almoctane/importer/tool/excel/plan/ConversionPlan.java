@@ -0,0 +1,147 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.plan;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.zip.Deflater;
+
+/**
+ * How a conversion is run, chosen from the estimated input size, the free heap and the available cores.
+ * The output is written from an in-memory workbook, with auto-sized columns, when it is expected to fit in the heap,
+ * otherwise the buffered rows get a heap budget and the workbook is streamed.
+ */
+@Slf4j
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ConversionPlan {
+
+    // share of the free heap the conversion plans to use, the rest is left for the garbage collector
+    private static final double USABLE_HEAP_RATIO = 0.75;
+    // a QTest row gives a simple and a validation step, the test rows are few compared to them
+    private static final int OUTPUT_ROWS_PER_INPUT_ROW = 2;
+    // approximate heap sizes, in bytes, of an output row in the row buffer and in the in-memory output workbooks, the
+    // text outputs are written straight from the row buffer
+    private static final int BUFFERED_BYTES_PER_OUTPUT_ROW = 64;
+    private static final int XLSX_BYTES_PER_OUTPUT_ROW = 3500;
+    private static final int XLS_BYTES_PER_OUTPUT_ROW = 1000;
+    private static final long MINIMUM_OUTPUT_HEAP_BUDGET = 16L * 1024 * 1024;
+    private static final int ROWS_PER_THREAD = 50_000;
+
+    private final InputEstimate inputEstimate;
+    private final boolean streamingOutput;
+    // 0 if the buffered rows are never spilled
+    private final long outputHeapBudget;
+    private final int parallelism;
+    // null to let POI compress the output on the writing thread
+    private final Integer compressionLevel;
+
+    /**
+     * @param inputEstimate        The estimated size of the input.
+     * @param outputFormatType     The format of the output workbook.
+     * @param conversionProperties The properties, a configured output heap budget takes precedence over the estimate.
+     *
+     * @return The plan of the conversion, its decision and inputs are logged.
+     */
+    public static ConversionPlan create(InputEstimate inputEstimate, OutputFormatType outputFormatType,
+                                        ConversionProperties conversionProperties) {
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        long usableHeap = (long) (freeHeap * USABLE_HEAP_RATIO);
+        int cores = runtime.availableProcessors();
+
+        long outputRowCount = (long) inputEstimate.getEstimatedRowCount() * OUTPUT_ROWS_PER_INPUT_ROW;
+        long bytesPerOutputRow = !outputFormatType.isWorkbook() ? 0
+                : outputFormatType == OutputFormatType.XLSX ? XLSX_BYTES_PER_OUTPUT_ROW : XLS_BYTES_PER_OUTPUT_ROW;
+        long inMemoryHeapSize = inputEstimate.getEstimatedHeapSize() + outputRowCount * (BUFFERED_BYTES_PER_OUTPUT_ROW + bytesPerOutputRow);
+        int parallelism = (int) Math.max(1, Math.min(cores, outputRowCount / ROWS_PER_THREAD));
+
+        Integer compressionLevel = getCompressionLevel(conversionProperties, parallelism);
+
+        ConversionPlan conversionPlan;
+        String reason;
+        if (conversionProperties.getOutputHeapBudget() > 0) {
+            conversionPlan = new ConversionPlan(inputEstimate, false, conversionProperties.getOutputHeapBudget(), parallelism, compressionLevel);
+            reason = "the output heap budget is configured";
+        } else if (inMemoryHeapSize <= usableHeap) {
+            conversionPlan = new ConversionPlan(inputEstimate, false, 0, parallelism, compressionLevel);
+            reason = "the conversion fits in the heap";
+        } else if (outputFormatType == OutputFormatType.XLS) {
+            conversionPlan = new ConversionPlan(inputEstimate, false, 0, parallelism, compressionLevel);
+            reason = "an .xls workbook can't be streamed, the conversion may run out of heap";
+        } else {
+            long outputHeapBudget = Math.max(MINIMUM_OUTPUT_HEAP_BUDGET, (usableHeap - inputEstimate.getEstimatedHeapSize()) / 4);
+            conversionPlan = new ConversionPlan(inputEstimate, true, outputHeapBudget, parallelism, compressionLevel);
+            reason = "the conversion doesn't fit in the heap";
+        }
+
+        log.info("Input {}: ~{} rows{}, ~{} MB on heap once opened. Free heap {} MB, {} cores. "
+                        + "Estimated in-memory conversion {} MB, so {}: writer {}, output heap budget {}, parallelism {}, compression {}.",
+                inputEstimate.getSource(), inputEstimate.getEstimatedRowCount(), inputEstimate.isExactRowCount() ? "" : " (from the size)",
+                inputEstimate.getEstimatedHeapSize() >> 20, freeHeap >> 20, cores, inMemoryHeapSize >> 20, reason,
+                conversionPlan.streamingOutput ? "streamed" : "in-memory",
+                conversionPlan.outputHeapBudget > 0 ? (conversionPlan.outputHeapBudget >> 20) + " MB" : "none",
+                conversionPlan.parallelism, getCompressionDescription(conversionPlan));
+        if (inputEstimate.getEstimatedHeapSize() > usableHeap) {
+            log.warn("The input workbook is estimated to take {} MB of heap but only {} MB are free, consider a larger -Xmx.",
+                    inputEstimate.getEstimatedHeapSize() >> 20, usableHeap >> 20);
+        }
+        return conversionPlan;
+    }
+
+    /**
+     * @return true if the .xlsx output is compressed by the {@code ParallelZipOutputStream} instead of POI.
+     */
+    public boolean isParallelCompression() {
+        return compressionLevel != null;
+    }
+
+    /**
+     * @param conversionProperties The properties that may configure the compression level.
+     * @param parallelism          The number of threads the conversion can use.
+     *
+     * @return The configured compression level, the default level when several threads are used, otherwise null.
+     */
+    private static Integer getCompressionLevel(ConversionProperties conversionProperties, int parallelism) {
+        Integer configuredLevel = conversionProperties.getOutputCompressionLevel();
+        if (configuredLevel != null) {
+            if (configuredLevel < Deflater.NO_COMPRESSION || configuredLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("The output compression level must be between 0 and 9.");
+            }
+            return configuredLevel;
+        }
+        return parallelism > 1 ? Deflater.DEFAULT_COMPRESSION : null;
+    }
+
+    /**
+     * @param conversionPlan The plan.
+     *
+     * @return How the output is compressed, for the logs.
+     */
+    private static String getCompressionDescription(ConversionPlan conversionPlan) {
+        if (!conversionPlan.isParallelCompression()) {
+            return "by POI";
+        }
+        String level = conversionPlan.compressionLevel == Deflater.DEFAULT_COMPRESSION ? "default" : conversionPlan.compressionLevel.toString();
+        return "level " + level + " on " + conversionPlan.parallelism + " thread(s)";
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.plan;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The size of an input workbook estimated by the {@link InputPreflight}, without parsing its cells.
+ */
+@Getter
+@AllArgsConstructor
+public class InputEstimate {
+
+    // describes where the estimate comes from, for the logs
+    private final String source;
+    // the uncompressed size in bytes of the parts that hold the cells
+    private final long cellDataSize;
+    private final int estimatedRowCount;
+    // true if the row count was read from the workbook and not derived from its size
+    private final boolean exactRowCount;
+    private final long estimatedHeapSize;
+
+    /**
+     * @return The same estimate for an input whose rows are streamed from the file instead of opened in memory.
+     */
+    public InputEstimate streamed() {
+        return new InputEstimate(source + ", streamed", cellDataSize, estimatedRowCount, exactRowCount, 0);
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.preview;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.input.RowView;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.StreamingSheetReader;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Chooses whole tests, all the rows of a test, from the rows of the input sheet while they are streamed.
+ * In {@link PreviewMode#FIRST} mode the reading stops at the first row of the test after the wanted ones. In
+ * {@link PreviewMode#SAMPLE} mode the whole sheet is read once and each stratum, the tests with the same value in
+ * the stratum column, keeps a reservoir sample of its tests. The sample then takes at least one test of each stratum
+ * and shares the rest of the tests between the strata in proportion to their size.
+ * The rows of a test are expected to be contiguous, the rows that continue a test after rows of other tests are only
+ * added to it while the test is part of the sample, otherwise they count as another test.
+ */
+public class TestSampler implements StreamingSheetReader.RowHandler {
+
+    private static final int MAX_STRATUM_COUNT = 100;
+    private static final String OTHER_STRATUM = "\u0000other";
+
+    private final String idColumnName;
+    private final String stratumColumnName;
+    private final PreviewMode previewMode;
+    private final int testCount;
+    private final Random random;
+    private final Map<String, Stratum> strata = new LinkedHashMap<>();
+    private final Map<String, TestRows> sampledTests = new HashMap<>();
+    @Getter
+    private String[] headers;
+    private int idColumnIndex;
+    private int stratumColumnIndex = -1;
+    private TestRows currentTest;
+    @Getter
+    private long readTestCount;
+    @Getter
+    private int sampleTestCount;
+
+    /**
+     * @param idColumnName      The name of the column that holds the id of the test of a row.
+     * @param stratumColumnName The name of the column whose values split the tests in strata, null for a single stratum.
+     * @param previewMode       How the tests are chosen.
+     * @param testCount         The number of tests wanted.
+     * @param random            The random source of the sample.
+     */
+    public TestSampler(String idColumnName, String stratumColumnName, PreviewMode previewMode, int testCount, Random random) {
+        this.idColumnName = idColumnName;
+        this.stratumColumnName = stratumColumnName;
+        this.previewMode = previewMode;
+        this.testCount = Math.max(testCount, 1);
+        this.random = random;
+    }
+
+    @Override
+    public boolean handleRow(RowView row) throws IOException {
+        if (headers == null) {
+            readHeaders(row.toArray());
+            return true;
+        }
+
+        String id = getValue(row, idColumnIndex);
+        if (StringUtils.isBlank(id)) {
+            return true;
+        }
+        if (currentTest != null && id.equals(currentTest.id)) {
+            currentTest.rows.add(row.toArray());
+        } else if (sampledTests.containsKey(id)) {
+            sampledTests.get(id).rows.add(row.toArray());
+        } else {
+            endTest();
+            if (previewMode == PreviewMode.FIRST && sampledTests.size() >= testCount) {
+                return false;
+            }
+            currentTest = new TestRows(id, row.getRowNumber(), getValue(row, stratumColumnIndex));
+            currentTest.rows.add(row.toArray());
+            readTestCount++;
+        }
+        return true;
+    }
+
+    /**
+     * @return The headers followed by the rows of the chosen tests, in the order of the input.
+     */
+    public List<String[]> getSampleRows() {
+        endTest();
+        List<TestRows> chosenTests = previewMode == PreviewMode.FIRST ? new ArrayList<>(sampledTests.values()) : drawSample();
+        chosenTests.sort(Comparator.comparingInt(test -> test.firstRowNumber));
+        sampleTestCount = chosenTests.size();
+
+        List<String[]> rows = new ArrayList<>();
+        rows.add(headers);
+        chosenTests.forEach(test -> rows.addAll(test.rows));
+        return rows;
+    }
+
+    /**
+     * @return The number of strata the tests were split in.
+     */
+    public int getStratumCount() {
+        return strata.size();
+    }
+
+    private void readHeaders(String[] values) throws IOException {
+        headers = values;
+        List<String> headerNames = Arrays.asList(values);
+        idColumnIndex = headerNames.indexOf(idColumnName);
+        if (idColumnIndex < 0) {
+            throw new IOException("The input sheet has no '" + idColumnName + "' column.");
+        }
+        if (stratumColumnName != null) {
+            stratumColumnIndex = headerNames.indexOf(stratumColumnName);
+            if (stratumColumnIndex < 0) {
+                throw new IOException("The input sheet has no '" + stratumColumnName + "' column to stratify the sample.");
+            }
+        }
+    }
+
+    /**
+     * Offers the current test to the sample.
+     */
+    private void endTest() {
+        if (currentTest == null) {
+            return;
+        }
+        TestRows test = currentTest;
+        currentTest = null;
+        if (previewMode == PreviewMode.FIRST) {
+            sampledTests.put(test.id, test);
+            return;
+        }
+
+        String stratumKey = strata.containsKey(test.stratum) || strata.size() < MAX_STRATUM_COUNT ? test.stratum : OTHER_STRATUM;
+        Stratum stratum = strata.computeIfAbsent(stratumKey, key -> new Stratum());
+        stratum.seenTestCount++;
+        if (stratum.reservoir.size() < testCount) {
+            stratum.reservoir.add(test);
+            sampledTests.put(test.id, test);
+        } else {
+            long index = (long) (random.nextDouble() * stratum.seenTestCount);
+            if (index < testCount) {
+                TestRows replacedTest = stratum.reservoir.set((int) index, test);
+                sampledTests.remove(replacedTest.id);
+                sampledTests.put(test.id, test);
+            }
+        }
+    }
+
+    /**
+     * @return The tests drawn from the reservoirs of the strata: one per stratum, then the rest in proportion to the
+     * size of the strata, the largest remainders first.
+     */
+    private List<TestRows> drawSample() {
+        List<Stratum> strataList = new ArrayList<>(strata.values());
+        long totalTestCount = strataList.stream().mapToLong(stratum -> stratum.seenTestCount).sum();
+        int[] quotas = new int[strataList.size()];
+        int remainingCount = testCount;
+        if (strataList.size() <= testCount) {
+            Arrays.fill(quotas, 1);
+            remainingCount -= strataList.size();
+        }
+
+        double[] remainders = new double[strataList.size()];
+        int assignedCount = 0;
+        for (int i = 0; i < strataList.size(); i++) {
+            double share = (double) remainingCount * strataList.get(i).seenTestCount / totalTestCount;
+            quotas[i] += (int) share;
+            remainders[i] = share - (int) share;
+            assignedCount += (int) share;
+        }
+        List<Integer> byRemainder = new ArrayList<>();
+        for (int i = 0; i < strataList.size(); i++) {
+            byRemainder.add(i);
+        }
+        byRemainder.sort(Comparator.comparingDouble((Integer i) -> remainders[i]).reversed());
+        for (int i = 0; i < remainingCount - assignedCount && i < byRemainder.size(); i++) {
+            quotas[byRemainder.get(i)]++;
+        }
+
+        List<TestRows> sample = new ArrayList<>();
+        for (int i = 0; i < strataList.size(); i++) {
+            List<TestRows> reservoir = new ArrayList<>(strataList.get(i).reservoir);
+            Collections.shuffle(reservoir, random);
+            sample.addAll(reservoir.subList(0, Math.min(quotas[i], reservoir.size())));
+        }
+        return sample;
+    }
+
+    private static String getValue(RowView row, int columnIndex) {
+        return StringUtils.defaultString(row.getValue(columnIndex));
+    }
+
+    /**
+     * The rows of a test.
+     */
+    private static class TestRows {
+
+        private final String id;
+        private final int firstRowNumber;
+        private final String stratum;
+        private final List<String[]> rows = new ArrayList<>();
+
+        private TestRows(String id, int firstRowNumber, String stratum) {
+            this.id = id;
+            this.firstRowNumber = firstRowNumber;
+            this.stratum = stratum;
+        }
+
+    }
+
+    /**
+     * The tests with the same value in the stratum column.
+     */
+    private static class Stratum {
+
+        private final List<TestRows> reservoir = new ArrayList<>();
+        private long seenTestCount;
+
+    }
+
+}
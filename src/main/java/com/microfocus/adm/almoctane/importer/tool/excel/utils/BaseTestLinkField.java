@@ -0,0 +1,50 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.utils;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * The TestLink test case and step fields, the columns of the rows read from a TestLink XML export, a row per step with
+ * the fields of its test case. The names are the elements and attributes of the export.
+ */
+@AllArgsConstructor
+public enum BaseTestLinkField {
+    // the names of the test suites of the test case, from the outermost, separated by " / "
+    TEST_SUITE("testsuite"),
+    INTERNAL_ID("internalid"),
+    NAME("name"),
+    EXTERNAL_ID("externalid"),
+    VERSION("version"),
+    SUMMARY("summary"),
+    PRECONDITIONS("preconditions"),
+    EXECUTION_TYPE("execution_type"),
+    IMPORTANCE("importance"),
+    STATUS("status"),
+    ESTIMATED_EXEC_DURATION("estimated_exec_duration"),
+    // the names of the keywords of the test case, separated by commas
+    KEYWORDS("keywords"),
+    STEP_NUMBER("step_number"),
+    ACTIONS("actions"),
+    EXPECTED_RESULTS("expectedresults");
+
+    private final String typeName;
+
+    @Override
+    public String toString() {
+        return typeName;
+    }
+}
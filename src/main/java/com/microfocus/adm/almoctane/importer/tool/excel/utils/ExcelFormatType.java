@@ -23,9 +23,9 @@ import java.util.Set;
  * Converter excel format types.
  */
 public enum ExcelFormatType {
-    QTEST, OCTANE, UNKNOWN;
+    QTEST, TESTLINK, OCTANE, UNKNOWN;
 
-    private static final Set<String> VALID_TYPES = Sets.newHashSet(QTEST.toString());
+    private static final Set<String> VALID_TYPES = Sets.newHashSet(QTEST.toString(), TESTLINK.toString(), OCTANE.toString());
 
     public static Set<String> validTypes() {
         return VALID_TYPES;
@@ -0,0 +1,59 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.utils;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.input.CsvFormat;
+import com.microfocus.adm.almoctane.importer.tool.excel.input.StreamingSheetReader;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the header row of a sheet without parsing the rest of the workbook.
+ * The sheet is read by the {@link StreamingSheetReader} the converter reads it with, which stops after the first row, so
+ * the probed header is the one the conversion finds.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class InputHeaderProbe {
+
+    /**
+     * @param file       The input Excel, CSV or TestLink XML file.
+     * @param sheetIndex The index of the sheet whose header is read, ignored for a CSV or an XML file.
+     * @param csvFormat  The charset and the delimiter of a CSV file.
+     *
+     * @return The non-empty values of the first row of the sheet, in column order.
+     *
+     * @throws IOException If the file isn't an Excel, a CSV or an XML file, it has no sheet at the given index or the read fails.
+     */
+    public static List<String> readHeaderNames(File file, int sheetIndex, CsvFormat csvFormat) throws IOException {
+        List<String> headerNames = new ArrayList<>();
+        StreamingSheetReader.read(file, sheetIndex, csvFormat, headerRow -> {
+            for (int i = 0; i < headerRow.getCellCount(); i++) {
+                String headerName = headerRow.getValue(i);
+                if (headerName != null && !headerName.isEmpty()) {
+                    headerNames.add(headerName);
+                }
+            }
+            return false;
+        });
+        return headerNames;
+    }
+
+}
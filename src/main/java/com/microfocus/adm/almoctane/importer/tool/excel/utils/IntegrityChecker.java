@@ -20,16 +20,20 @@ import com.microfocus.adm.almoctane.importer.tool.excel.configuration.Conversion
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
 import com.microfocus.adm.almoctane.importer.tool.excel.configuration.FieldMapping;
-import com.microfocus.adm.almoctane.importer.tool.excel.converter.AbstractConverter;
+import com.microfocus.adm.almoctane.importer.tool.excel.converter.ConverterFactory;
 import com.microfocus.adm.almoctane.importer.tool.excel.converter.QTestConverter;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvent;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionEvents;
+import com.microfocus.adm.almoctane.importer.tool.excel.monitoring.ConversionPhase;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -56,9 +60,12 @@ public class IntegrityChecker {
      * Checks the integrity of the given {@link ConversionProperties} and {@link ConversionMappings}.
      */
     public void checkIntegrity() {
-        checkConversionProperties();
+        // the answer of the user to the warnings isn't part of the recorded check
+        try (ConversionEvent ignored = ConversionEvents.beginPhase(ConversionPhase.INTEGRITY_CHECK)) {
+            checkConversionProperties();
 
-        checkConversionMappings();
+            checkConversionMappings();
+        }
 
         integrityHandler.promptUserIntegrityStatus();
     }
@@ -73,7 +80,8 @@ public class IntegrityChecker {
     }
 
     /**
-     * If an input file was specified, it exists and it can be written to.
+     * If an input file was specified, it exists and it can be read.
+     * Only the header row of the input sheet is read, the workbook is parsed once by the converter.
      */
     private void checkInputFile() {
         String inputFilePath = conversionProperties.getInputFilePath();
@@ -81,14 +89,20 @@ public class IntegrityChecker {
             File inputFile = new File(inputFilePath);
             if (!inputFile.exists()) {
                 integrityHandler.logError("Input file '{}' doesn't exist.", inputFilePath);
-            } else if (isLocked(inputFile)) {
+            } else if (isLockedForReading(inputFile)) {
                 integrityHandler.logError("Input file '{}' is already in use.", inputFilePath);
             } else {
-                try (Workbook inputWorkbook = WorkbookFactory.create(inputFile)) {
-                    Sheet inputSheet = inputWorkbook.getSheetAt(QTestConverter.INPUT_SHEET_INDEX);
-                    this.inputHeaderNames = AbstractConverter.getHeaderNameToIndex(inputSheet).keySet();
+                // an unknown format is reported with the output checks, its header is read from the sheet of a QTest export
+                ExcelFormatType inputFileFormatType = conversionProperties.getInputFileFormatType();
+                int sheetIndex = inputFileFormatType == ExcelFormatType.UNKNOWN
+                        ? QTestConverter.INPUT_SHEET_INDEX : ConverterFactory.getInputSheetIndex(inputFileFormatType);
+                try {
+                    this.inputHeaderNames = new LinkedHashSet<>(InputHeaderProbe.readHeaderNames(inputFile, sheetIndex,
+                            conversionProperties.getInputCsvFormat()));
                 } catch (IOException e) {
                     integrityHandler.logError(e);
+                } catch (IllegalArgumentException e) {
+                    integrityHandler.logError(e.getMessage());
                 }
             }
         } else {
@@ -149,6 +163,24 @@ public class IntegrityChecker {
                 .forEach(entry -> integrityHandler.logError("Target field {} is used by multiple input field mappings.", entry.getKey()));
     }
 
+    /**
+     * @param file The file that will be tested if it is locked for reading.
+     *
+     * @return true if another program holds an exclusive lock on the file, false otherwise.
+     */
+    private static boolean isLockedForReading(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, true);
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (IOException | OverlappingFileLockException ex) {
+            return true;
+        }
+    }
+
     /**
      * @param file The file that will be tested if it is locked.
      *
@@ -0,0 +1,46 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum OutputFormatType {
+    XLSX(".xlsx", true),
+    XLS(".xls", true),
+    CSV(".csv", false),
+    JSONL(".jsonl", false);
+
+    private final String extension;
+    // false for the text formats, written without POI
+    private final boolean workbook;
+
+    /**
+     * @param filePath The path of the output file.
+     *
+     * @return The output format that matches the extension of the given file path.
+     */
+    public static OutputFormatType fromFilePath(String filePath) {
+        for (OutputFormatType formatType : values()) {
+            if (filePath.endsWith(formatType.getExtension())) {
+                return formatType;
+            }
+        }
+        throw new IllegalArgumentException("The specified output file is not an Excel, a CSV or a JSON lines file.");
+    }
+}
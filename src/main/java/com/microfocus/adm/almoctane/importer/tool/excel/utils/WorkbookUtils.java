@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Workbook utils.
+ * The workbook type is chosen from the file signature, unlike {@link org.apache.poi.ss.usermodel.WorkbookFactory} which
+ * looks up and loads every registered workbook provider, so only the classes of the used format are loaded.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class WorkbookUtils {
+
+    /**
+     * @param file The Excel file.
+     *
+     * @return The workbook of the given file, opened read only so closing it never writes it back to the file.
+     *
+     * @throws IOException If the file doesn't exist, isn't an Excel file or the read fails.
+     */
+    public static Workbook openReadOnly(File file) throws IOException {
+        if (!file.exists()) {
+            throw new FileNotFoundException("The specified input file could not be found.");
+        }
+
+        FileMagic fileMagic = FileMagic.valueOf(file);
+        switch (fileMagic) {
+            case OOXML:
+                try {
+                    return new XSSFWorkbook(OPCPackage.open(file, PackageAccess.READ));
+                } catch (InvalidFormatException e) {
+                    throw new IOException(e);
+                }
+            case OLE2:
+                return new HSSFWorkbook(new POIFSFileSystem(file, true), true);
+            default:
+                throw new IOException("The file '" + file + "' is not an Excel file, its format is " + fileMagic + ".");
+        }
+    }
+
+    /**
+     * @param inputStream The stream that contains the Excel workbook, it is read fully but not closed.
+     *
+     * @return The workbook read from the given stream.
+     *
+     * @throws IOException If the stream doesn't contain an Excel workbook or the read fails.
+     */
+    public static Workbook open(InputStream inputStream) throws IOException {
+        InputStream markableInputStream = FileMagic.prepareToCheckMagic(inputStream);
+        FileMagic fileMagic = FileMagic.valueOf(markableInputStream);
+        switch (fileMagic) {
+            case OOXML:
+                return new XSSFWorkbook(markableInputStream);
+            case OLE2:
+                return new HSSFWorkbook(markableInputStream);
+            default:
+                throw new IOException("The given stream doesn't contain an Excel workbook, its format is " + fileMagic + ".");
+        }
+    }
+
+    /**
+     * @param outputFormatType The format of the output file.
+     *
+     * @return A new empty workbook.
+     */
+    public static Workbook create(OutputFormatType outputFormatType) {
+        switch (outputFormatType) {
+            case XLSX:
+                return new XSSFWorkbook();
+            case XLS:
+                return new HSSFWorkbook();
+            default:
+                throw new IllegalArgumentException("The specified output file is not an Excel file.");
+        }
+    }
+
+    /**
+     * @param rows       The rows of the sheet, as text, null for the empty cells.
+     * @param sheetIndex The index of the sheet that holds the rows, the sheets before it are left empty.
+     *
+     * @return A new workbook that holds the given rows as text cells.
+     */
+    public static Workbook create(List<String[]> rows, int sheetIndex) {
+        Workbook workbook = new XSSFWorkbook();
+        for (int i = 0; i < sheetIndex; i++) {
+            workbook.createSheet();
+        }
+        Sheet sheet = workbook.createSheet();
+        for (int rowNumber = 0; rowNumber < rows.size(); rowNumber++) {
+            Row row = sheet.createRow(rowNumber);
+            String[] values = rows.get(rowNumber);
+            for (int columnIndex = 0; columnIndex < values.length; columnIndex++) {
+                if (values[columnIndex] != null) {
+                    row.createCell(columnIndex).setCellValue(values[columnIndex]);
+                }
+            }
+        }
+        return workbook;
+    }
+
+}
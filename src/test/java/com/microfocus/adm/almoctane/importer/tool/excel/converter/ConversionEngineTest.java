@@ -0,0 +1,90 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.MappingsUtils;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ConversionException;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.OutputFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.WorkbookUtils;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversionEngineTest {
+
+    private static final List<String[]> QTEST_ROWS = Arrays.asList(
+            new String[]{"Id", "Name", "Test Step Description", "Test Step Expected Result"},
+            new String[]{"TC-1", "Login", "Open the page", "The page is open"});
+
+    @Test
+    void rejectsAStreamSessionWhoseMappedFieldIsNotInTheInputHeader() throws IOException {
+        ConversionEngine conversionEngine = newEngine("{\"field_mappings\": {\"Missing\": {\"target\": \"name\"}}}");
+
+        ConversionException exception = assertThrows(ConversionException.class,
+                () -> conversionEngine.newConverter(toInputStream(QTEST_ROWS), OutputFormatType.XLSX, () -> false));
+        assertEquals("The input sheet has no 'Missing' column, the columns of the QTEST format and the mapped fields must be in its header.",
+                exception.getMessage());
+    }
+
+    @Test
+    void rejectsAStreamSessionWithoutTheColumnsOfTheInputFormat() throws IOException {
+        ConversionEngine conversionEngine = newEngine("{\"field_mappings\": {\"Name\": {\"target\": \"name\"}}}");
+        List<String[]> rowsWithoutId = Arrays.asList(
+                new String[]{"Name", "Test Step Description", "Test Step Expected Result"},
+                new String[]{"Login", "Open the page", "The page is open"});
+
+        ConversionException exception = assertThrows(ConversionException.class,
+                () -> conversionEngine.newConverter(toInputStream(rowsWithoutId), OutputFormatType.XLSX, () -> false));
+        assertEquals("The input sheet has no 'Id' column, the columns of the QTEST format and the mapped fields must be in its header.",
+                exception.getMessage());
+    }
+
+    /**
+     * @param mappingsJson The mappings of the conversion.
+     *
+     * @return An engine that converts QTest exports with the given mappings.
+     */
+    private static ConversionEngine newEngine(String mappingsJson) throws IOException {
+        ConversionMappings conversionMappings = MappingsUtils.readMapping(
+                new ByteArrayInputStream(mappingsJson.getBytes(StandardCharsets.UTF_8)), ConversionMappings.class);
+        return new ConversionEngine(ExcelFormatType.QTEST, conversionMappings);
+    }
+
+    /**
+     * @param rows The rows of the input sheet, its header first.
+     *
+     * @return A stream of a workbook that holds the given rows.
+     */
+    private static ByteArrayInputStream toInputStream(List<String[]> rows) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Workbook workbook = WorkbookUtils.create(rows, QTestConverter.INPUT_SHEET_INDEX)) {
+            workbook.write(outputStream);
+        }
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.converter;
+
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionMappings;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.ConversionProperties;
+import com.microfocus.adm.almoctane.importer.tool.excel.configuration.MappingsUtils;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.ExcelFormatType;
+import com.microfocus.adm.almoctane.importer.tool.excel.utils.WorkbookUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OctaneConverterTest {
+
+    private static final List<String[]> INPUT_ROWS = Arrays.asList(
+            new String[]{"unique_id", "type", "name", "step_type", "step_description"},
+            new String[]{"1", "test_manual", "Login", null, null},
+            new String[]{"2", "step", null, "Simple", "Open the page"},
+            new String[]{"3", "step", null, "Validation", "The page is open"},
+            new String[]{"4", "test_manual", "Logout", null, null},
+            new String[]{"5", "step", null, "Simple", "Log out"});
+
+    @Test
+    void keepsTheMandatoryColumnsOfATestMappedToThemselves() throws IOException {
+        List<String> outputLines = convert(INPUT_ROWS, "{\"field_mappings\": {"
+                + "\"unique_id\": {\"target\": \"unique_id\"},"
+                + "\"type\": {\"target\": \"type\"},"
+                + "\"name\": {\"target\": \"name\"}}}");
+
+        assertEquals(Arrays.asList(
+                "unique_id,type,step_type,step_description,name",
+                "1,test_manual,,,Login",
+                "2,step,Simple,Open the page,",
+                "3,step,Validation,The page is open,",
+                "4,test_manual,,,Logout",
+                "5,step,Simple,Log out,"), outputLines);
+    }
+
+    @Test
+    void doesNotOverwriteTheMandatoryColumnsOfATestWithAnotherField() throws IOException {
+        List<String> outputLines = convert(INPUT_ROWS, "{\"field_mappings\": {\"name\": {\"target\": \"unique_id\"}}}");
+
+        assertEquals(Arrays.asList(
+                "unique_id,type,step_type,step_description",
+                "1,test_manual,,",
+                "2,step,Simple,Open the page",
+                "3,step,Validation,The page is open",
+                "4,test_manual,,",
+                "5,step,Simple,Log out"), outputLines);
+    }
+
+    @Test
+    void rejectsARowWhoseUniqueIdIsNotAnIntegerWithoutMakingUpAnId() throws IOException {
+        List<String> outputLines = convert(Arrays.asList(
+                new String[]{"unique_id", "type", "step_type", "step_description"},
+                new String[]{"1", "test_manual", null, null},
+                new String[]{"2", "step", "Simple", "Open the page"},
+                new String[]{null, "step", "Simple", "A step without an id"},
+                new String[]{"T-4", "test_manual", null, null},
+                new String[]{"5", "step", "Simple", "A step of a rejected test"},
+                new String[]{"6", "test_manual", null, null},
+                new String[]{"7", "step", "Call", "1"}), "{\"field_mappings\": {}}");
+
+        assertEquals(Arrays.asList(
+                "unique_id,type,step_type,step_description",
+                "1,test_manual,,",
+                "2,step,Simple,Open the page",
+                "6,test_manual,,",
+                "7,step,Call,1"), outputLines);
+    }
+
+    @Test
+    void rejectsTheStepsOfARowThatIsNeitherATestNorAStep() throws IOException {
+        List<String> outputLines = convert(Arrays.asList(
+                new String[]{"unique_id", "type", "name", "step_type", "step_description"},
+                new String[]{"1", "test_manual", "Login", null, null},
+                new String[]{"2", "step", null, "Simple", "Open the page"},
+                new String[]{"3", "test_gherkin", "Login scenario", null, null},
+                new String[]{"4", "step", null, "Simple", "A step of the gherkin test"},
+                new String[]{"5", "test_manual", "Logout", null, null},
+                new String[]{"6", "step", null, "Simple", "Log out"}), "{\"field_mappings\": {\"name\": {\"target\": \"name\"}}}");
+
+        assertEquals(Arrays.asList(
+                "unique_id,type,step_type,step_description,name",
+                "1,test_manual,,,Login",
+                "2,step,Simple,Open the page,",
+                "5,test_manual,,,Logout",
+                "6,step,Simple,Log out,"), outputLines);
+    }
+
+    /**
+     * @param inputRows    The rows of the input sheet, its header first.
+     * @param mappingsJson The mappings of the conversion.
+     *
+     * @return The lines of the CSV output of the conversion of the input rows.
+     */
+    private static List<String> convert(List<String[]> inputRows, String mappingsJson) throws IOException {
+        ConversionMappings conversionMappings = MappingsUtils.readMapping(
+                new ByteArrayInputStream(mappingsJson.getBytes(StandardCharsets.UTF_8)), ConversionMappings.class);
+        ConversionEngine conversionEngine = new ConversionEngine(ExcelFormatType.OCTANE, conversionMappings);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Converter converter = conversionEngine.newConverter(WorkbookUtils.create(inputRows, OctaneConverter.INPUT_SHEET_INDEX),
+                "output.csv", ConversionProperties.getDefaultProperties())) {
+            converter.convert();
+            converter.write(outputStream);
+        }
+        return Arrays.asList(new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n"));
+    }
+
+}
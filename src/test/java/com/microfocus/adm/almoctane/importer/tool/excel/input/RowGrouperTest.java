@@ -0,0 +1,60 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.input;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowGrouperTest {
+
+    private static final int ROW_COUNT = 70000;
+
+    @Test
+    void groupsThroughManyRunsLikeInMemory() throws IOException {
+        List<String> groupedInMemory = group(0);
+        // about a thousand group runs and, with the smallest order buffer, more order runs than are merged at once
+        List<String> groupedThroughRuns = group(8 * 1024);
+
+        assertEquals(ROW_COUNT, groupedInMemory.size());
+        assertEquals(groupedInMemory, groupedThroughRuns);
+    }
+
+    /**
+     * @param heapBudget The heap budget of the grouper.
+     *
+     * @return The visited rows, as their number and whether they are the first row of their group.
+     */
+    private static List<String> group(long heapBudget) throws IOException {
+        List<String> visitedRows = new ArrayList<>();
+        Random random = new Random(42);
+        try (RowGrouper rowGrouper = new RowGrouper(heapBudget)) {
+            for (int rowNumber = 1; rowNumber <= ROW_COUNT; rowNumber++) {
+                rowGrouper.add("TC-" + random.nextInt(2000), rowNumber);
+            }
+            assertTrue(rowGrouper.isSpilled() == heapBudget > 0);
+            rowGrouper.forEachRow((rowNumber, firstOfGroup) -> visitedRows.add(rowNumber + (firstOfGroup ? " first" : "")));
+        }
+        return visitedRows;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * (c) Copyright 2022 Micro Focus or one of its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microfocus.adm.almoctane.importer.tool.excel.output;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ParallelZipOutputStreamTest {
+
+    @Test
+    void writesEntriesReadableByTheJdkOnOneThread() throws IOException {
+        assertRoundTrip(1);
+    }
+
+    @Test
+    void writesEntriesReadableByTheJdkOnSeveralThreads() throws IOException {
+        assertRoundTrip(3);
+    }
+
+    /**
+     * Writes an entry byte by byte and another one in arrays, both over several blocks, and reads them back.
+     *
+     * @param threadCount The number of compressing threads.
+     */
+    private static void assertRoundTrip(int threadCount) throws IOException {
+        byte[] content = new byte[700 * 1024];
+        Random random = new Random(42);
+        for (int i = 0; i < content.length; i++) {
+            // compressible but not trivial, so the blocks refer to their dictionary
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ParallelZipOutputStream zipOutputStream = new ParallelZipOutputStream(zip, Deflater.DEFAULT_COMPRESSION, threadCount)) {
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry("bytes.txt"));
+            for (byte value : content) {
+                zipOutputStream.write(value);
+            }
+            zipOutputStream.closeArchiveEntry();
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry("arrays.txt"));
+            for (int offset = 0; offset < content.length; offset += 1000) {
+                zipOutputStream.write(content, offset, Math.min(1000, content.length - offset));
+            }
+            zipOutputStream.closeArchiveEntry();
+        }
+
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            for (String name : new String[]{"bytes.txt", "arrays.txt"}) {
+                ZipEntry entry = zipInputStream.getNextEntry();
+                assertEquals(name, entry.getName());
+                assertArrayEquals(content, IOUtils.toByteArray(zipInputStream));
+            }
+            assertNull(zipInputStream.getNextEntry());
+        }
+    }
+
+}